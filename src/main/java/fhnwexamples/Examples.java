@@ -124,6 +124,9 @@ public class Examples {
         deviceExamples.add(new SerialCamera(11, "Grove Serial Camera example"));
         deviceExamples.add(new RaspberryPiCameraDevice(12, "Raspberry Pi Camera example"));
         deviceExamples.add(new LedStripDriverDevice(13, "LED Strip Driver example"));
+        deviceExamples.add(new SimulatedSerialCameraDevice(14, "Simulated Serial Camera example"));
+        deviceExamples.add(new SimulatedStepperMotorDevice(15, "Simulated Stepper Motor example"));
+        deviceExamples.add(new SimulatedMultiAxisStepperDevice(16, "Simulated Multi Axis Stepper example"));
         deviceExamples.add(new PresentationProject(98, "Presentation Project!"));
         deviceExamples.add(new SampleProject(99, "Sample Project!"));
     }
@@ -67,6 +67,7 @@ public class SampleProject extends Example {
 
         lcd = new I2CLCDComponent(0x27, I2CBus.BUS_1);
         lcd.init();
+        lcd.startAsyncWriter();
         CameraConfiguration stillConfig = RaspberryPiCameraComponent.createCameraConfiguration()
                 .width(1920)
                 .height(1080)
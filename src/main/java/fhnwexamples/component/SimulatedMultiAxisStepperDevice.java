@@ -0,0 +1,49 @@
+package fhnwexamples.component;
+
+import com.pi4j.util.Console;
+import fhnwexamples.Example;
+import fhnwgpio.components.MultiAxisStepperController;
+import fhnwgpio.components.StepperMotorComponent;
+import fhnwgpio.components.helper.RecordingStepperMotorOutput;
+import fhnwgpio.components.helper.StepperMotionProfile;
+import fhnwgpio.components.helper.StepperMotorMode;
+
+import java.util.Arrays;
+
+/**
+ * Example for MultiAxisStepperController usage without the hardware. This example connects three stepper motors of
+ * an XYZ stage to recording outputs and moves them along a square with a lift of the Z axis at every corner. After
+ * every move it prints the positions and the number of steps every axis did. It runs on any machine, no Raspberry Pi
+ * needed.
+ */
+public class SimulatedMultiAxisStepperDevice extends Example {
+    public SimulatedMultiAxisStepperDevice(int key, String title) {
+        super(key, title);
+    }
+
+    // tag::SimulatedMultiAxisStepperDevice[]
+    @Override public void execute() throws Exception {
+        Console console = new Console();
+
+        RecordingStepperMotorOutput[] outputs = { new RecordingStepperMotorOutput(),
+                new RecordingStepperMotorOutput(), new RecordingStepperMotorOutput() };
+        StepperMotorComponent x = new StepperMotorComponent(outputs[0], 2, StepperMotorMode.HALF_STEP);
+        StepperMotorComponent y = new StepperMotorComponent(outputs[1], 2, StepperMotorMode.HALF_STEP);
+        StepperMotorComponent z = new StepperMotorComponent(outputs[2], 2, StepperMotorMode.HALF_STEP);
+        MultiAxisStepperController stage = new MultiAxisStepperController(
+                StepperMotionProfile.trapezoidal(1000, 2000), x, y, z);
+
+        long[][] corners = { { 1000, 0, 100 }, { 1000, 1000, 0 }, { 0, 1000, 100 }, { 0, 0, 0 } };
+        for (long[] corner : corners) {
+            for (RecordingStepperMotorOutput output : outputs) {
+                output.clear();
+            }
+            long[] positions = stage.moveTo(corner).get();
+            console.println("positions " + Arrays.toString(positions) + ", steps " + outputs[0].getWriteCount()
+                    + " / " + outputs[1].getWriteCount() + " / " + outputs[2].getWriteCount() + ", "
+                    + stage.getStepScheduler());
+        }
+        stage.shutdown();
+    }
+    // end::SimulatedMultiAxisStepperDevice[]
+}
@@ -0,0 +1,44 @@
+package fhnwexamples.component;
+
+import fhnwexamples.Example;
+import fhnwgpio.components.SerialCameraComponent;
+import fhnwgpio.components.helper.SerialCameraConfiguration;
+import fhnwgpio.components.helper.SimulatedSerialCamera;
+import com.pi4j.util.Console;
+
+import java.util.Arrays;
+
+/**
+ * Example for SerialCameraComponent usage without the hardware. This example connects the component to a simulated
+ * serial camera with latency and bit errors, captures some pictures and prints the achieved throughput and the
+ * number of corrupt packages. It runs on any machine, no Raspberry Pi needed.
+ */
+public class SimulatedSerialCameraDevice extends Example {
+    public SimulatedSerialCameraDevice(int key, String title) {
+        super(key, title);
+    }
+
+    // tag::SimulatedSerialCameraDevice[]
+    @Override public void execute() throws Exception {
+        Console console = new Console();
+
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(30000, 42);
+        SimulatedSerialCamera simulation = new SimulatedSerialCamera(jpeg, 42);
+        simulation.setLatencyMicros(2000);
+        simulation.setBitErrorRate(0.00001);
+
+        SerialCameraConfiguration configuration = new SerialCameraConfiguration().packageSize(512).baudRate(115200);
+        SerialCameraComponent cam = new SerialCameraComponent(configuration, simulation);
+
+        for (int i = 1; i <= 5; i++) {
+            long start = System.nanoTime();
+            byte[] picture = cam.getImageAsJpgBytes();
+            long durationMillis = Math.max(1, (System.nanoTime() - start) / 1000000);
+            console.println("picture " + i + ": " + picture.length + " bytes in " + durationMillis + " ms ("
+                    + picture.length * 1000L / durationMillis + " bytes/s), correct: " + Arrays.equals(picture, jpeg));
+        }
+        console.println("corrupt packages: " + cam.getCorruptPackageCount() + ", retries: "
+                + cam.getPackageRetryCount() + ", packages: " + cam.getPackageCount());
+    }
+    // end::SimulatedSerialCameraDevice[]
+}
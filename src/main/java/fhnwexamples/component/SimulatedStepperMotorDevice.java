@@ -0,0 +1,52 @@
+package fhnwexamples.component;
+
+import com.pi4j.util.Console;
+import fhnwexamples.Example;
+import fhnwgpio.components.StepperMotorComponent;
+import fhnwgpio.components.helper.RecordingStepperMotorOutput;
+import fhnwgpio.components.helper.StepperMotionProfile;
+import fhnwgpio.components.helper.StepperMotorMode;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Example for StepperMotorComponent usage without the hardware. This example connects the component to a recording
+ * output, makes one turn in every mode with a trapezoidal motion profile and prints the number of coil writes, the
+ * number of pin changes and the timing jitter of the steps. Then it starts an asynchronous move, changes its target
+ * while the motor is moving and waits for the motor to arrive. It runs on any machine, no Raspberry Pi needed.
+ */
+public class SimulatedStepperMotorDevice extends Example {
+    public SimulatedStepperMotorDevice(int key, String title) {
+        super(key, title);
+    }
+
+    // tag::SimulatedStepperMotorDevice[]
+    @Override public void execute() throws Exception {
+        Console console = new Console();
+
+        RecordingStepperMotorOutput output = new RecordingStepperMotorOutput();
+        StepperMotorComponent stepperMotor = new StepperMotorComponent(output, 2, StepperMotorMode.SINGLE_STEP);
+        stepperMotor.setMotionProfile(StepperMotionProfile.trapezoidal(1000, 2000));
+
+        StepperMotorMode[] modes = { StepperMotorMode.HALF_STEP, StepperMotorMode.SINGLE_STEP,
+                StepperMotorMode.DOUBLE_STEP };
+        int[] steps = { 4096, 2048, 2048 };
+        for (int i = 0; i < modes.length; i++) {
+            output.clear();
+            stepperMotor.getStepScheduler().resetStatistics();
+            stepperMotor.setMode(modes[i]);
+            stepperMotor.stepForwards(steps[i]);
+            console.println(modes[i] + ": " + output.getWriteCount() + " writes, " + output.getPinChangeCount()
+                    + " pin changes, " + stepperMotor.getStepScheduler());
+        }
+
+        long start = stepperMotor.getPosition();
+        CompletableFuture<Long> move = stepperMotor.moveBy(2048);
+        Thread.sleep(1000);
+        console.println("position after 1 second: " + stepperMotor.getPosition() + ", new target: " + start);
+        stepperMotor.moveTo(start);
+        console.println("arrived at position " + move.get());
+        stepperMotor.stop();
+    }
+    // end::SimulatedStepperMotorDevice[]
+}
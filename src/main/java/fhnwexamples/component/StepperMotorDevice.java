@@ -4,6 +4,7 @@ import com.pi4j.io.gpio.*;
 import com.pi4j.util.Console;
 import fhnwexamples.Example;
 import fhnwgpio.components.StepperMotorComponent;
+import fhnwgpio.components.helper.StepperMotionProfile;
 import fhnwgpio.components.helper.StepperMotorMode;
 
 /**
@@ -11,6 +12,7 @@ import fhnwgpio.components.helper.StepperMotorMode;
  * the constructor with the most default values. The initial stepper motor mode is set to the default value
  * 'SINGLE_STEP' and the step delay is set to the default value of 2 milliseconds. The stepper motor makes one full
  * turn forwards followed by one full turn backwards in every mode.  After each mode there is a 5 second pause.
+ * Finally the stepper motor makes one full turn with a trapezoidal motion profile.
  */
 public class StepperMotorDevice extends Example {
     public StepperMotorDevice(int key, String title) {
@@ -63,6 +65,13 @@ public class StepperMotorDevice extends Example {
         stepperMotor.stepBackwards(2048);
         stepperMotor.stop();
 
+        Thread.sleep(5000);
+
+        console.println("Make 2048 steps forwards with a trapezoidal motion profile");
+        stepperMotor.setMotionProfile(StepperMotionProfile.trapezoidal(800, 1600));
+        stepperMotor.stepForwards(2048);
+        stepperMotor.stop();
+
         gpio.shutdown();
     }
     // end::StepperMotorDevice[]
@@ -1,26 +1,98 @@
 package fhnwgpio.components;
 
 import fhnwgpio.components.base.I2CBase;
+import fhnwgpio.components.base.I2CException;
+import fhnwgpio.components.base.I2CTransaction;
 import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
+import fhnwgpio.components.helper.AnimationFrames;
+import fhnwgpio.components.helper.AnimationHandle;
+import fhnwgpio.components.helper.AnimationScheduler;
 import fhnwgpio.components.helper.ComponentLogger;
+import fhnwgpio.components.helper.LcdGeometry;
+import fhnwgpio.components.helper.LcdGlyph;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * FHNW implementation for the I2C LCD display
  * <p>
+ * The size of the display is given by its LcdGeometry, 1x16, 2x16, 2x20, 4x16 and 4x20 modules are supported. The
+ * default is the 2x16 LCD1602.
+ * <p>
+ * The component keeps a shadow frame buffer of all characters on the display. Text is written into the frame buffer
+ * first and a flush sends only the cells that differ from what was sent before. The cursor address is only set when
+ * the changed cells are not next to each other, so small updates cost a handful of bus writes and do not flicker.
+ * <p>
+ * Scroll, bounce and marquee animations run on the shared AnimationScheduler. The start methods return immediately
+ * with a handle to cancel the animation, only one animation runs per display at a time.
+ * <p>
+ * Custom glyphs are kept in the 8 CGRAM slots of the display as a least recently used cache. A glyph is only uploaded
+ * if it is not already in a slot, and slots of glyphs that are still visible are reused last.
+ * <p>
+ * With startAsyncWriter() all updates are sent by a dedicated writer thread. A flush then only marks the frame buffer
+ * as changed and returns immediately. The writer always sends the latest frame, so rapid updates collapse into one
+ * redraw.
+ * <p>
  * Following library was used as additional reference for underlying logic
  * https://github.com/Poduzov/PI4J-I2C-LCD
  */
 public class I2CLCDComponent extends I2CBase {
 
-    private final int ROWS = 2;
-    private final int COLUMNS = 16;
+    private final LcdGeometry geometry;
+    private final int rows;
+    private final int columns;
+    private final String emptyLine;
+
+    // minimum timings of the HD44780 controller in nanoseconds
+    private final long ENABLE_PULSE_NANOS = 500;
+    private final long COMMAND_NANOS = 50_000;
+    private final long CLEAR_NANOS = 2_000_000;
+    private final long RESET_NANOS = 5_000_000;
+
+    // the frame buffer and the glyph slots are guarded by the monitor of the component, the state of the display
+    // itself (sent characters, cursor, transaction) by the ioLock. The ioLock is never held when entering the monitor.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final I2CTransaction transaction = beginTransaction();
+
+    // characters that should be shown and characters that were last sent to the display. A sent cell holds
+    // UNKNOWN_CELL if the display content is unknown, which differs from every character of a frame.
+    private static final int UNKNOWN_CELL = 0x100;
+    private final byte[] frameBuffer;
+    private final int[] sentBuffer;
+    // DDRAM address the display writes the next character to, -1 if unknown
+    private int cursorAddress = -1;
+    // byte last written to the port expander, -1 if unknown, and the backlight state every write carries
+    private int expanderState = -1;
+    private boolean backlightOn = true;
+    private AnimationHandle animation;
+    // frames of the current animation, a frame of another animation must not touch the frame buffer anymore
+    private AnimationFrames animationFrames;
 
+    // one slot mailbox of the asynchronous writer: the latest frame buffer plus a pending clear, glyph uploads,
+    // characters written at the cursor and backlight change
+    private Thread asyncWriter;
+    private boolean frameDirty = false;
+    private boolean clearRequested = false;
+    private byte[] pendingCharacters = new byte[16];
+    private int pendingCharacterCount = 0;
+    private boolean backlightRequested = true;
+    private boolean backlightDirty = false;
+
+    private final int CGRAM_SLOTS = 8;
+    private final byte FULL_BLOCK = (byte) 0xFF;
+    // glyphs in the CGRAM mapped to their slot, ordered from the least to the most recently used
+    private final LinkedHashMap<LcdGlyph, Integer> glyphSlots = new LinkedHashMap<>(16, 0.75f, true);
+    private final LcdGlyph[] pendingUploads = new LcdGlyph[CGRAM_SLOTS];
+    private final LcdGlyph[] barGlyphs = { LcdGlyph.bar(0), LcdGlyph.bar(1), LcdGlyph.bar(2), LcdGlyph.bar(3),
+            LcdGlyph.bar(4) };
 
     /**
-     * Standard Constructor that needs address and the busnumber to initialise
+     * Standard Constructor that needs address and the busnumber to initialise a 2x16 display
      *
      * @param address   address of the I2C LCD
      * @param busNumber bus number of the I2
@@ -28,45 +100,97 @@ public class I2CLCDComponent extends I2CBase {
      * @throws I2CFactory.UnsupportedBusNumberException Exception can be thrown when trying to initialise
      */
     public I2CLCDComponent(int address, int busNumber) throws IOException, I2CFactory.UnsupportedBusNumberException {
+        this(address, busNumber, LcdGeometry.LCD_2X16);
+    }
+
+    /**
+     * Constructor that needs address, busnumber and the size of the display
+     *
+     * @param address   address of the I2C LCD
+     * @param busNumber bus number of the I2
+     * @param geometry  number of rows and columns of the display
+     * @throws IOException                              Exception that can be thrown when trying to initialise
+     * @throws I2CFactory.UnsupportedBusNumberException Exception can be thrown when trying to initialise
+     */
+    public I2CLCDComponent(int address, int busNumber, LcdGeometry geometry)
+            throws IOException, I2CFactory.UnsupportedBusNumberException {
         super(address, busNumber);
+        this.geometry = geometry;
+        this.rows = geometry.getRows();
+        this.columns = geometry.getColumns();
+        this.emptyLine = String.format("%" + columns + "s", "");
+        this.frameBuffer = new byte[rows * columns];
+        this.sentBuffer = new int[rows * columns];
+        resetBuffers();
     }
 
     /**
-     * Constructor that needs I2C information in the pi4j I2CDevice object
+     * Constructor that needs I2C information in the pi4j I2CDevice object for a 2x16 display
      *
      * @param device device object containing i2c info
      */
     public I2CLCDComponent(I2CDevice device) {
+        this(device, LcdGeometry.LCD_2X16);
+    }
+
+    /**
+     * Constructor that needs I2C information in the pi4j I2CDevice object and the size of the display
+     *
+     * @param device   device object containing i2c info
+     * @param geometry number of rows and columns of the display
+     */
+    public I2CLCDComponent(I2CDevice device, LcdGeometry geometry) {
         super(device);
+        this.geometry = geometry;
+        this.rows = geometry.getRows();
+        this.columns = geometry.getColumns();
+        this.emptyLine = String.format("%" + columns + "s", "");
+        this.frameBuffer = new byte[rows * columns];
+        this.sentBuffer = new int[rows * columns];
+        resetBuffers();
     }
 
     /**
      * sends initialisation commands to display
      */
     // tag::LCDInit[]
-    public void init() {
+    public synchronized void init() {
+        ioLock.lock();
         try {
-            writeCommand((byte) 0x03);
-            writeCommand((byte) 0x03);
-            writeCommand((byte) 0x03);
-            writeCommand((byte) 0x02);
-
-            writeCommand((byte) (LCD_FUNCTIONSET | LCD_2LINE | LCD_5x8DOTS | LCD_4BITMODE));
-            writeCommand((byte) (LCD_DISPLAYCONTROL | LCD_DISPLAYON));
-            writeCommand(LCD_CLEARDISPLAY);
-            writeCommand((byte) (LCD_ENTRYMODESET | LCD_ENTRYLEFT));
-            Thread.sleep(0, 200000);
+            expanderState = -1;
+            writeCommand(transaction, (byte) 0x03);
+            transaction.delay(RESET_NANOS);
+            writeCommand(transaction, (byte) 0x03);
+            transaction.delay(RESET_NANOS);
+            writeCommand(transaction, (byte) 0x03);
+            transaction.delay(RESET_NANOS);
+            writeCommand(transaction, (byte) 0x02);
+
+            byte lines = rows > 1 ? LCD_2LINE : LCD_1LINE;
+            writeCommand(transaction, (byte) (LCD_FUNCTIONSET | lines | LCD_5x8DOTS | LCD_4BITMODE));
+            writeCommand(transaction, (byte) (LCD_DISPLAYCONTROL | LCD_DISPLAYON));
+            writeCommand(transaction, LCD_CLEARDISPLAY);
+            transaction.delay(CLEAR_NANOS);
+            writeCommand(transaction, (byte) (LCD_ENTRYMODESET | LCD_ENTRYLEFT));
+            transaction.commitChecked();
+            resetBuffers();
+            cursorAddress = 0;
             ComponentLogger.logInfo("I2CLCDComponent: initialised");
         } catch (Exception ex) {
+            Arrays.fill(sentBuffer, UNKNOWN_CELL);
+            cursorAddress = -1;
+            expanderState = -1;
             ComponentLogger.logError("I2CLCDComponent: Error while trying to initialise " + ex.getMessage());
+        } finally {
+            ioLock.unlock();
         }
     }
     // end::LCDInit[]
 
     /**
      * displays a text on the first line of the display.
-     * If it's larger than 16 characters then it will jump over to the second line.
-     * The excess characters (greater than 32) are not shown on the display
+     * If it's larger than a line then it will jump over to the next lines.
+     * The excess characters that don't fit on the display are not shown
      *
      * @param text text to diplay on lcd
      */
@@ -76,7 +200,7 @@ public class I2CLCDComponent extends I2CBase {
 
     /**
      * writes string to the lcd display on a specific line.
-     * Excess characters (greater than 16) are not shown on the line
+     * Excess characters that don't fit on the line are not shown
      *
      * @param text to be displayed
      * @param line on the display for the text to appear
@@ -88,7 +212,8 @@ public class I2CLCDComponent extends I2CBase {
     /**
      * displays the string with an additional position. There are 16 fields on one LCD1602 line.
      * The position gives the number of fields that should be empty before the text.
-     * Excess characters (greater than 16-position) on the line will not be shown.
+     * Excess characters (greater than 16-position) on the line will not be shown, unless jumpToNextLine is set.
+     * Then they continue on the following lines at the same position.
      *
      * @param text           text to show on the lcd text.
      * @param line           line on the lcd display
@@ -96,36 +221,20 @@ public class I2CLCDComponent extends I2CBase {
      * @param jumpToNextLine jumps to the second line if the first line is
      */
     // tag::LCDDisplayText[]
-    public void displayText(String text, int line, int pos, boolean jumpToNextLine) {
-        ComponentLogger.logInfo("I2CLCDComponent: displaying text: '" + text + "' on line " + line);
-
-        if (text.length() > 32 - pos) {
-            text = text.substring(0, 31 - pos);
-            ComponentLogger.logInfo("I2CLCDComponent: text length cut to 31 characters");
+    public synchronized void displayText(String text, int line, int pos, boolean jumpToNextLine) {
+        if (ComponentLogger.isDebugEnabled()) {
+            ComponentLogger.logDebug("I2CLCDComponent: displaying text: '" + text + "' on line " + line);
         }
 
-        String firstLine = text, secondLine = text;
-        byte posNew;
-
-        //lcd only has 2 lines, so I assume the first one if the second one wasn't selected explicitly
-        if (line != 2) {
-            posNew = (byte) pos;
-            boolean textLargerThanLine = text.length() > COLUMNS - pos;
-            if (textLargerThanLine) {
-                firstLine = text.substring(0, 16 - pos);
-                secondLine = text.substring(COLUMNS - pos);
-            }
-            displayLine(firstLine, posNew);
-            if (jumpToNextLine && textLargerThanLine) displayLine(secondLine, posNew + 0x40);
-        } else {
-            posNew = (byte) (0x40 + pos);
-            displayLine(secondLine, posNew);
-        }
+        int row = getRow(line);
+        writeToFrame(text, 0, row, pos, jumpToNextLine);
+        flush();
     }
     // end::LCDDisplayText[]
 
     /**
-     * shows text on display and scrolls it with a delay
+     * shows text on display and scrolls it with a delay. Blocks until the text scrolled out of the display, or
+     * forever if startAgain is set.
      *
      * @param text  to display
      * @param line  on which the text should be visible
@@ -134,27 +243,54 @@ public class I2CLCDComponent extends I2CBase {
      */
     // tag::LCDDisplayScrollText[]
     public void displayScrollText(String text, int line, int delay, boolean jumpToNextLine, boolean startAgain) throws InterruptedException {
+        awaitAnimation(startScrollText(text, line, delay, jumpToNextLine, startAgain));
+    }
+
+    /**
+     * starts scrolling the text from the right to the left in the background and returns immediately.
+     *
+     * @param text           to display
+     * @param line           on which the text should be visible
+     * @param delay          for every position jump in milliseconds
+     * @param jumpToNextLine continues the text on the second line
+     * @param startAgain     starts again when the text scrolled out of the display
+     * @return handle to cancel or wait for the animation
+     */
+    public AnimationHandle startScrollText(String text, int line, int delay, boolean jumpToNextLine, boolean startAgain) {
         ComponentLogger.logInfo("I2CLCDComponent: displaying scroll text: '" + text + "' on line " + line + "with a delay of " + delay + " milliseconds");
 
-        String paddedtext = getEmptyLine() + text;
+        String paddedtext = emptyLine + text;
+        int row = getRow(line);
 
-        for (int i = 0; i < paddedtext.length(); i++) {
-            displayText(paddedtext.substring(i), line, 0, jumpToNextLine);
-            Thread.sleep(delay);
-            if (jumpToNextLine)
-                clearText(false);
-            else
-                clearLine(line);
+        return startAnimation(new AnimationFrames() {
+            private int i = 0;
 
-            if (i == paddedtext.length() - 1 && startAgain)
-                displayScrollText(text, line, delay, jumpToNextLine, startAgain);
-        }
+            @Override
+            public boolean nextFrame() {
+                synchronized (I2CLCDComponent.this) {
+                    if (animationFrames != this) return false;
+                    if (jumpToNextLine)
+                        clearFrame();
+                    else
+                        clearRow(row);
+                    // the closing frame only clears the text
+                    if (i < paddedtext.length()) writeToFrame(paddedtext, i, row, 0, jumpToNextLine);
+                    flush();
+                }
+                if (i == paddedtext.length()) return false;
+
+                i++;
+                if (i == paddedtext.length() && startAgain) i = 0;
+                return true;
+            }
+        }, delay);
     }
     // end::LCDDisplayScrollText[]
 
     /**
      * displays the text and scrolls to the sides, but bounces back.
-     * This only works for short texts, otherwise it would be unreadable
+     * This only works for short texts, otherwise it would be unreadable.
+     * Blocks until the text bounced once, or forever if startAgain is set.
      *
      * @param text       to display
      * @param line       for the text
@@ -164,53 +300,459 @@ public class I2CLCDComponent extends I2CBase {
      */
     // tag::LCDDisplayBounceText[]
     public void displayBounceText(String text, int line, int delay, boolean startAgain) throws InterruptedException {
+        awaitAnimation(startBounceText(text, line, delay, startAgain));
+    }
+
+    /**
+     * starts bouncing the text between the sides of the display in the background and returns immediately.
+     *
+     * @param text       to display, must be at least 2 characters shorter than the line
+     * @param line       for the text
+     * @param delay      for every position jump in milliseconds
+     * @param startAgain decides wether it's done only once or again and again
+     * @return handle to cancel or wait for the animation
+     */
+    public AnimationHandle startBounceText(String text, int line, int delay, boolean startAgain) {
         ComponentLogger.logInfo("I2CLCDComponent: displaying bounce text: '" + text + "' on line " + line + "with a delay of " + delay + " milliseconds");
 
         // Bounce doesn't make sense for a large text
-        if (text.length() >= COLUMNS - 1) {
-            IllegalArgumentException ex = new IllegalArgumentException("text has to be smaller than 15 characters");
+        if (text.length() >= columns - 1) {
+            IllegalArgumentException ex = new IllegalArgumentException("text has to be smaller than " + (columns - 1) + " characters");
             ComponentLogger.logError("I2CLCDComponent: " + ex.getMessage());
             throw ex;
 
         }
 
-        //shifts the whole text to the right end
-        for (int i = 0; i < COLUMNS - text.length(); i++) {
-            if (i + text.length() <= COLUMNS) {
-                displayText(text, line, i, false);
-                Thread.sleep(delay);
-                clearLine(line);
+        int row = getRow(line);
+        // positions 0 .. free move to the right end, free .. 1 back to the left end
+        int free = columns - text.length();
+
+        return startAnimation(new AnimationFrames() {
+            private int i = 0;
+
+            @Override
+            public boolean nextFrame() {
+                synchronized (I2CLCDComponent.this) {
+                    if (animationFrames != this) return false;
+                    // the closing frame only clears the row
+                    if (i == 2 * free) {
+                        showOnRow("", row, 0);
+                        return false;
+                    }
+                    showOnRow(text, row, i < free ? i : 2 * free - i);
+                }
+
+                i++;
+                if (i == 2 * free && startAgain) i = 0;
+                return true;
+            }
+        }, delay);
+    }
+    // end::LCDDisplayBounceText[]
+
+    /**
+     * starts a marquee in the background and returns immediately. The text runs from the right to the left and
+     * enters again on the right side, separated by a few spaces, without an empty display in between.
+     *
+     * @param text       to display
+     * @param line       for the text
+     * @param delay      for every position jump in milliseconds
+     * @param startAgain runs forever if set, otherwise the text runs through once
+     * @return handle to cancel or wait for the animation
+     */
+    public AnimationHandle startMarqueeText(String text, int line, int delay, boolean startAgain) {
+        ComponentLogger.logInfo("I2CLCDComponent: displaying marquee text: '" + text + "' on line " + line + "with a delay of " + delay + " milliseconds");
+
+        String loop = text + "   ";
+        int row = getRow(line);
+
+        return startAnimation(new AnimationFrames() {
+            private int i = 0;
+
+            @Override
+            public boolean nextFrame() {
+                synchronized (I2CLCDComponent.this) {
+                    if (animationFrames != this) return false;
+                    for (int col = 0; col < columns; col++) {
+                        frameBuffer[row * columns + col] = (byte) loop.charAt((i + col) % loop.length());
+                    }
+                    flush();
+                }
+
+                i++;
+                if (i == loop.length()) {
+                    if (!startAgain) return false;
+                    i = 0;
+                }
+                return true;
+            }
+        }, delay);
+    }
+
+    /**
+     * Returns the character code of a custom glyph, which can be used in texts for the display. The glyph is uploaded
+     * to the display if it is not already in one of the 8 CGRAM slots. If all slots are used, the least recently used
+     * glyph that is not visible on the display is replaced.
+     *
+     * @param glyph the custom glyph
+     * @return character code of the glyph (0 to 7)
+     */
+    public synchronized char getGlyphCharacter(LcdGlyph glyph) {
+        Integer slot = glyphSlots.get(glyph);
+        if (slot == null) {
+            slot = getFreeGlyphSlot();
+            if (asyncWriter != null) {
+                pendingUploads[slot] = glyph;
+            } else {
+                boolean uploaded;
+                ioLock.lock();
+                try {
+                    uploaded = uploadGlyph(slot, glyph);
+                } finally {
+                    ioLock.unlock();
+                }
+                // the slot is not marked as loaded, so the next call uploads the glyph again
+                if (!uploaded) return (char) slot.intValue();
+            }
+            glyphSlots.put(glyph, slot);
+        }
+        return (char) slot.intValue();
+    }
+
+    /**
+     * displays a custom glyph on a specific position
+     *
+     * @param glyph the custom glyph
+     * @param line  line on the lcd display
+     * @param pos   position on the line
+     */
+    public synchronized void displayGlyph(LcdGlyph glyph, int line, int pos) {
+        int row = getRow(line);
+        if (pos < 0 || pos >= columns) return;
+
+        frameBuffer[row * columns + pos] = (byte) getGlyphCharacter(glyph);
+        flush();
+    }
+
+    /**
+     * displays a horizontal bar graph over the whole line. Every character has 5 pixel columns, so a line of
+     * 16 characters shows the value with a resolution of 80 steps. The partial bars use up to 4 CGRAM slots which are
+     * only uploaded once.
+     *
+     * @param line     line on the lcd display
+     * @param value    value to show, values outside 0 and maxValue are clamped
+     * @param maxValue value of a full bar
+     */
+    public synchronized void displayBarGraph(int line, double value, double maxValue) {
+        int row = getRow(line);
+        int pixels = LcdGlyph.COLUMNS * columns;
+        int filled = (int) Math.round(Math.max(0, Math.min(1, value / maxValue)) * pixels);
+
+        for (int col = 0; col < columns; col++) {
+            int filledColumns = Math.max(0, Math.min(LcdGlyph.COLUMNS, filled - col * LcdGlyph.COLUMNS));
+            byte character;
+            if (filledColumns == LcdGlyph.COLUMNS) {
+                character = FULL_BLOCK;
+            } else if (filledColumns == 0) {
+                character = (byte) ' ';
+            } else {
+                character = (byte) getGlyphCharacter(barGlyphs[filledColumns]);
             }
+            frameBuffer[row * columns + col] = character;
         }
-        //shifts the whole text to the left end
-        for (int i = COLUMNS - text.length(); i > 0; i--) {
-            displayText(text, line, i, false);
-            Thread.sleep(delay);
-            clearLine(line);
+        flush();
+    }
+
+    /**
+     * stops the animation currently running on the display. The display keeps showing the last frame, a frame that
+     * waits to be drawn is dropped.
+     */
+    public synchronized void stopAnimation() {
+        if (animation != null) {
+            animation.cancel();
+            animation = null;
         }
-        if (startAgain) displayBounceText(text, line, delay, startAgain);
+        animationFrames = null;
     }
-    // end::LCDDisplayBounceText[]
 
     /**
-     * Sets the backlight on or off
+     * Sets the backlight on or off. If the asynchronous writer is running, the change is handed over to the writer.
      *
      * @param state sets the backlight (true == on, false == off)
      */
-    public void setBacklightState(boolean state) {
+    public synchronized void setBacklightState(boolean state) {
         ComponentLogger.logInfo("I2CLCDComponent: Set Backlight: " + state);
-        if (state) {
-            writeCmd(LCD_BACKLIGHT);
-        } else {
-            writeCmd(LCD_NOBACKLIGHT);
+        backlightRequested = state;
+        if (asyncWriter != null) {
+            backlightDirty = true;
+            frameDirty = true;
+            notifyAll();
+            return;
+        }
+
+        ioLock.lock();
+        try {
+            sendBacklight(state);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the backlight is on
+     */
+    public synchronized boolean getBacklightState() {
+        return backlightRequested;
+    }
+
+    /**
+     * write a character to lcd at the cursor. If the asynchronous writer is running, the character is handed over to
+     * the writer, which writes it into the frame buffer at the cursor address after its next frame.
+     */
+    public synchronized void writeCharacter(byte charvalue) {
+        if (asyncWriter != null) {
+            if (pendingCharacterCount == pendingCharacters.length) {
+                pendingCharacters = Arrays.copyOf(pendingCharacters, pendingCharacterCount * 2);
+            }
+            pendingCharacters[pendingCharacterCount++] = charvalue;
+            frameDirty = true;
+            notifyAll();
+            return;
+        }
+
+        ioLock.lock();
+        try {
+            writeSplitCommand(transaction, charvalue, Rs);
+            // keep the frame buffer in sync with the character written at the cursor
+            int cell = getCell(cursorAddress);
+            if (cell >= 0) {
+                frameBuffer[cell] = charvalue;
+            }
+            if (commitDisplay()) {
+                if (cell >= 0) sentBuffer[cell] = charvalue;
+                if (cursorAddress >= 0) cursorAddress++;
+            }
+        } finally {
+            ioLock.unlock();
         }
     }
 
     /**
-     * write a character to lcd
+     * Sends all cells of the frame buffer that changed since the last flush to the display. The cursor address is
+     * only set if the next changed cell is not at the current cursor position.
+     * If the asynchronous writer is running, the frame is handed over to the writer and the method returns
+     * immediately.
      */
-    public void writeCharacter(byte charvalue) {
-        writeSplitCommand(charvalue, Rs);
+    public synchronized void flush() {
+        if (asyncWriter != null) {
+            frameDirty = true;
+            notifyAll();
+            return;
+        }
+
+        ioLock.lock();
+        try {
+            sendFrame(frameBuffer);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a writer thread that sends all further updates to the display in the background. Methods that change
+     * the display return after updating the frame buffer, the writer then sends the latest frame. Updates that arrive
+     * while the writer is busy are combined into one redraw.
+     */
+    public synchronized void startAsyncWriter() {
+        if (asyncWriter != null) return;
+
+        asyncWriter = new Thread(this::runAsyncWriter, "I2CLCDWriter");
+        asyncWriter.setDaemon(true);
+        asyncWriter.start();
+        ComponentLogger.logInfo("I2CLCDComponent: asynchronous writer started");
+    }
+
+    /**
+     * Stops the writer thread after it sent the latest frame. Further updates are sent by the calling thread again.
+     *
+     * @throws InterruptedException Thrown if the thread is interrupted while waiting for the writer
+     */
+    public void stopAsyncWriter() throws InterruptedException {
+        Thread writer;
+        synchronized (this) {
+            writer = asyncWriter;
+            asyncWriter = null;
+            notifyAll();
+        }
+        if (writer != null) {
+            writer.join();
+            ComponentLogger.logInfo("I2CLCDComponent: asynchronous writer stopped");
+        }
+    }
+
+    /**
+     * @return true if updates are sent by the asynchronous writer
+     */
+    public synchronized boolean isAsyncWriterRunning() {
+        return asyncWriter != null;
+    }
+
+    /**
+     * Loop of the writer thread. Takes the latest frame out of the mailbox and sends it, until the writer is stopped
+     * and no frame is pending anymore. If the thread is interrupted, it sends the pending frame and hands all further
+     * updates back to the calling threads.
+     */
+    private void runAsyncWriter() {
+        byte[] frame = new byte[frameBuffer.length];
+        LcdGlyph[] uploads = new LcdGlyph[CGRAM_SLOTS];
+        LcdGlyph[] failedUploads = new LcdGlyph[CGRAM_SLOTS];
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                boolean clear;
+                boolean upload = false;
+                boolean uploadFailed = false;
+                boolean backlight;
+                boolean backlightState;
+                synchronized (this) {
+                    try {
+                        while (!frameDirty && asyncWriter == Thread.currentThread()) {
+                            wait();
+                        }
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                        if (asyncWriter == Thread.currentThread()) asyncWriter = null;
+                        ComponentLogger.logInfo("I2CLCDComponent: asynchronous writer interrupted");
+                    }
+                    if (!frameDirty) return;
+
+                    // taken before the monitor is left, so a caller that sends a newer frame itself after the writer
+                    // was stopped sends it after this one
+                    ioLock.lock();
+                    clear = clearRequested;
+                    clearRequested = false;
+                    for (int slot = 0; slot < CGRAM_SLOTS; slot++) {
+                        uploads[slot] = pendingUploads[slot];
+                        pendingUploads[slot] = null;
+                        upload |= uploads[slot] != null;
+                    }
+                    placePendingCharacters(clear, upload);
+                    System.arraycopy(frameBuffer, 0, frame, 0, frame.length);
+                    backlight = backlightDirty;
+                    backlightDirty = false;
+                    backlightState = backlightRequested;
+                    frameDirty = false;
+                }
+
+                try {
+                    if (backlight) sendBacklight(backlightState);
+                    if (clear) sendClear();
+                    for (int slot = 0; slot < CGRAM_SLOTS; slot++) {
+                        if (uploads[slot] != null && !uploadGlyph(slot, uploads[slot])) {
+                            failedUploads[slot] = uploads[slot];
+                            uploadFailed = true;
+                        }
+                        uploads[slot] = null;
+                    }
+                    sendFrame(frame);
+                } finally {
+                    ioLock.unlock();
+                }
+                if (uploadFailed) forgetFailedUploads(failedUploads);
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * writes the characters queued by writeCharacter into the frame buffer, at the addresses the cursor of the display
+     * has after the pending clear, glyph uploads and changed cells are sent. Characters at an unknown cursor address
+     * are dropped. Must be called with the monitor and the ioLock held.
+     *
+     * @param clear  true if a clear is pending
+     * @param upload true if glyph uploads are pending
+     */
+    private void placePendingCharacters(boolean clear, boolean upload) {
+        if (pendingCharacterCount == 0) return;
+
+        int address = clear ? 0 : upload ? -1 : cursorAddress;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int cell = row * columns + col;
+                if (frameBuffer[cell] != (clear ? ' ' : sentBuffer[cell])) {
+                    address = geometry.getRowOffset(row) + col + 1;
+                }
+            }
+        }
+        for (int i = 0; i < pendingCharacterCount && address >= 0; i++) {
+            int cell = getCell(address);
+            if (cell >= 0) frameBuffer[cell] = pendingCharacters[i];
+            address++;
+        }
+        pendingCharacterCount = 0;
+    }
+
+    /**
+     * switches the backlight and keeps the other lines of the expander as they are. Must be called with the ioLock
+     * held.
+     *
+     * @param state sets the backlight (true == on, false == off)
+     */
+    private void sendBacklight(boolean state) {
+        backlightOn = state;
+        byte value = (byte) ((expanderState < 0 ? 0 : expanderState & ~LCD_BACKLIGHT) | getBacklightBit());
+        transaction.write(value);
+        try {
+            transaction.commitChecked();
+            expanderState = value & 0xFF;
+        } catch (I2CException ex) {
+            ComponentLogger.logError("I2CLCDComponent: " + ex.getMessage());
+            expanderState = -1;
+        }
+    }
+
+    /**
+     * sends the cells of a frame that differ from the sent characters. Must be called with the ioLock held.
+     *
+     * @param frame characters that should be shown
+     */
+    private void sendFrame(byte[] frame) {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int cell = row * columns + col;
+                if (frame[cell] == sentBuffer[cell]) continue;
+
+                int address = geometry.getRowOffset(row) + col;
+                if (address != cursorAddress) {
+                    writeCommand(transaction, (byte) (LCD_SETDDRAMADDR | address));
+                }
+                writeSplitCommand(transaction, frame[cell], Rs);
+                sentBuffer[cell] = frame[cell];
+                cursorAddress = address + 1;
+            }
+        }
+        if (transaction.size() > 0) commitDisplay();
+    }
+
+    /**
+     * sends the collected transaction. If it fails, the content of the display and the cursor are unknown, so the
+     * next flush redraws all cells. Must be called with the ioLock held.
+     *
+     * @return true if the transaction was sent
+     */
+    private boolean commitDisplay() {
+        try {
+            transaction.commitChecked();
+            return true;
+        } catch (I2CException ex) {
+            ComponentLogger.logError("I2CLCDComponent: " + ex.getMessage());
+            Arrays.fill(sentBuffer, UNKNOWN_CELL);
+            cursorAddress = -1;
+            expanderState = -1;
+            return false;
+        }
     }
 
     /**
@@ -220,84 +762,276 @@ public class I2CLCDComponent extends I2CBase {
         clearText(false);
     }
 
-    private void clearText(boolean log) {
+    private synchronized void clearText(boolean log) {
         if (log) ComponentLogger.logInfo("I2CLCDComponent: Display cleared");
-        writeCommand(LCD_CLEARDISPLAY);
-        writeCommand(LCD_RETURNHOME);
+        clearFrame();
+        if (asyncWriter != null) {
+            clearRequested = true;
+            frameDirty = true;
+            notifyAll();
+            return;
+        }
+
+        ioLock.lock();
+        try {
+            sendClear();
+        } finally {
+            ioLock.unlock();
+        }
     }
 
     /**
-     * displays a line on a specific position
+     * sends the clear display command. Must be called with the ioLock held.
+     */
+    private void sendClear() {
+        writeCommand(transaction, LCD_CLEARDISPLAY);
+        transaction.delay(CLEAR_NANOS);
+        writeCommand(transaction, LCD_RETURNHOME);
+        transaction.delay(CLEAR_NANOS);
+        if (commitDisplay()) {
+            Arrays.fill(sentBuffer, ' ');
+            cursorAddress = 0;
+        }
+    }
+
+    /**
+     * writes text into the frame buffer, starting at a position of a row. Characters that don't fit on the row are
+     * continued on the next row at the same position if wrap is set, otherwise they are cut off.
      *
-     * @param text to display
-     * @param pos  for the start of the text
+     * @param text  text to write
+     * @param from  index of the first character of the text to write
+     * @param row   row index starting at 0
+     * @param pos   position on the row
+     * @param wrap  continues on the next row if the text is too long
      */
-    private void displayLine(String text, int pos) {
-        writeCommand((byte) (0x80 + pos));
+    private void writeToFrame(String text, int from, int row, int pos, boolean wrap) {
+        int col = pos;
+        for (int i = from; i < text.length(); i++) {
+            if (col >= columns) {
+                if (!wrap || row + 1 >= rows || pos >= columns) break;
+                row++;
+                col = pos;
+            }
+            frameBuffer[row * columns + col] = (byte) text.charAt(i);
+            col++;
+        }
+    }
 
-        for (int i = 0; i < text.length(); i++) {
-            writeCharacter((byte) text.charAt(i));
+    /**
+     * shows the text on a otherwise empty row
+     *
+     * @param text text to show
+     * @param row  row index starting at 0
+     * @param pos  position on the row
+     */
+    private synchronized void showOnRow(String text, int row, int pos) {
+        clearRow(row);
+        writeToFrame(text, 0, row, pos, false);
+        flush();
+    }
+
+    /**
+     * finds a CGRAM slot for a new glyph. Takes an unused slot if there is one, otherwise the slot of the least
+     * recently used glyph that is not visible on the display, or the least recently used glyph if all are visible.
+     *
+     * @return the free slot
+     */
+    private int getFreeGlyphSlot() {
+        if (glyphSlots.size() < CGRAM_SLOTS) {
+            boolean[] used = new boolean[CGRAM_SLOTS];
+            for (int slot : glyphSlots.values()) used[slot] = true;
+            for (int slot = 0; slot < CGRAM_SLOTS; slot++) {
+                if (!used[slot]) return slot;
+            }
+        }
+
+        Map.Entry<LcdGlyph, Integer> evicted = null;
+        for (Map.Entry<LcdGlyph, Integer> entry : glyphSlots.entrySet()) {
+            if (evicted == null) evicted = entry;
+            if (!isVisible(entry.getValue())) {
+                evicted = entry;
+                break;
+            }
         }
+        glyphSlots.remove(evicted.getKey());
+        return evicted.getValue();
     }
 
-    //Gets an empty line
-    private String getEmptyLine() {
-        String text = "";
-        return String.format("%16s", text);
+    /**
+     * checks if a character code is shown on the display. The codes 8 to 15 show the same glyphs as 0 to 7.
+     *
+     * @param slot CGRAM slot
+     * @return true if the glyph in the slot is visible
+     */
+    private boolean isVisible(int slot) {
+        for (byte character : frameBuffer) {
+            if ((character & 0xF7) == slot) return true;
+        }
+        return false;
     }
 
     /**
-     * clears the selected lin
+     * writes the bitmap of a glyph into a CGRAM slot. Must be called with the ioLock held.
      *
-     * @param line line to clear
+     * @param slot  CGRAM slot (0 to 7)
+     * @param glyph the custom glyph
+     * @return true if the glyph was uploaded
      */
-    private void clearLine(int line) {
-        displayText(getEmptyLine(), line);
+    private boolean uploadGlyph(int slot, LcdGlyph glyph) {
+        writeCommand(transaction, (byte) (LCD_SETCGRAMADDR | (slot << 3)));
+        for (int row = 0; row < LcdGlyph.ROWS; row++) {
+            writeSplitCommand(transaction, glyph.getRow(row), Rs);
+        }
+        // the address counter points into the CGRAM now
+        cursorAddress = -1;
+        return commitDisplay();
     }
 
+    /**
+     * forgets glyphs the writer could not upload, so the next getGlyphCharacter uploads them again. Slots that got
+     * another glyph in the meantime are kept.
+     *
+     * @param failed glyphs per slot whose upload failed, null for the other slots
+     */
+    private synchronized void forgetFailedUploads(LcdGlyph[] failed) {
+        for (int slot = 0; slot < CGRAM_SLOTS; slot++) {
+            if (failed[slot] == null) continue;
+            Integer current = glyphSlots.get(failed[slot]);
+            if (current != null && current == slot && pendingUploads[slot] == null) {
+                glyphSlots.remove(failed[slot]);
+            }
+            failed[slot] = null;
+        }
+    }
 
     /**
-     * clocks EN to latch command
+     * starts an animation and stops the one running before
+     *
+     * @param frames animation frames
+     * @param delay  time between two frames in milliseconds
+     * @return handle of the started animation
+     */
+    private synchronized AnimationHandle startAnimation(AnimationFrames frames, int delay) {
+        stopAnimation();
+        animationFrames = frames;
+        animation = AnimationScheduler.schedule(frames, delay);
+        return animation;
+    }
+
+    /**
+     * waits for an animation and cancels it if the waiting thread is interrupted
+     *
+     * @param handle handle of the animation
+     * @throws InterruptedException Thrown if the waiting thread is interrupted
      */
-    private void lcdStrobe(byte data) {
+    private void awaitAnimation(AnimationHandle handle) throws InterruptedException {
         try {
-            writeCmd((byte) (data | En | LCD_BACKLIGHT));
-            Thread.sleep(0, 500000);
-            writeCmd((byte) ((data & ~En) | LCD_BACKLIGHT));
-            Thread.sleep(0, 100000);
-        } catch (Exception ex) {
-            ComponentLogger.logError("I2CLCDComponent: Error sending cmd to device " + ex.getMessage());
+            handle.await();
+        } catch (InterruptedException ex) {
+            synchronized (this) {
+                if (animation == handle) {
+                    stopAnimation();
+                } else {
+                    handle.cancel();
+                }
+            }
+            throw ex;
         }
     }
 
     /**
-     * write a command to lcd
+     * fills the whole frame buffer and the sent buffer with spaces, which is the state after a clear display command
      */
-    private void writeCommand(byte cmd) {
-        writeSplitCommand(cmd, (byte) 0);
+    private void resetBuffers() {
+        Arrays.fill(frameBuffer, (byte) ' ');
+        Arrays.fill(sentBuffer, ' ');
+    }
+
+    /**
+     * fills the whole frame buffer with spaces
+     */
+    private void clearFrame() {
+        Arrays.fill(frameBuffer, (byte) ' ');
+    }
+
+    /**
+     * fills a row of the frame buffer with spaces
+     *
+     * @param row row index starting at 0
+     */
+    private void clearRow(int row) {
+        Arrays.fill(frameBuffer, row * columns, (row + 1) * columns, (byte) ' ');
+    }
+
+    /**
+     * maps a DDRAM address to a cell of the frame buffer
+     *
+     * @param address DDRAM address
+     * @return index of the cell or -1 if the address is not visible
+     */
+    private int getCell(int address) {
+        for (int row = 0; row < rows; row++) {
+            int col = address - geometry.getRowOffset(row);
+            if (col >= 0 && col < columns) return row * columns + col;
+        }
+        return -1;
+    }
+
+    /**
+     * maps a line number to a row index. Lines outside of the display are shown on the first line.
+     *
+     * @param line line number starting at 1
+     * @return row index starting at 0
+     */
+    private int getRow(int line) {
+        return line >= 1 && line <= rows ? line - 1 : 0;
+    }
+
+
+    /**
+     * @return backlight bit of the expander for the current backlight state
+     */
+    private byte getBacklightBit() {
+        return backlightOn ? LCD_BACKLIGHT : LCD_NOBACKLIGHT;
+    }
+
+    /**
+     * clocks EN to latch command
+     */
+    private void lcdStrobe(I2CTransaction tx, byte data) {
+        tx.write((byte) (data | En)).delay(ENABLE_PULSE_NANOS);
+        tx.write(data).delay(COMMAND_NANOS);
+    }
+
+    /**
+     * adds a command for the lcd to the transaction
+     */
+    private void writeCommand(I2CTransaction tx, byte cmd) {
+        writeSplitCommand(tx, cmd, (byte) 0);
     }
 
     /**
      * write byte split in two as it is initialized in 4Bit Mode
      * commands larger than 4 bits should use this
      */
-    private void writeSplitCommand(byte cmd, byte mode) {
+    private void writeSplitCommand(I2CTransaction tx, byte cmd, byte mode) {
         //bitwise AND with 11110000 to remove last 4 bits
-        writeFourBits((byte) (mode | (cmd & 0xF0)));
+        writeFourBits(tx, (byte) (mode | (cmd & 0xF0)));
         //bitshift and bitwise AND to remove first 4 bits
-        writeFourBits((byte) (mode | ((cmd << 4) & 0xF0)));
+        writeFourBits(tx, (byte) (mode | ((cmd << 4) & 0xF0)));
     }
 
     /**
-     * writes four bits
+     * writes four bits as one burst of data, data|En and data. The data lines only have to be stable before En
+     * falls, so the first phase is left out if RS, RW and the backlight already have the right level on the expander.
      */
-    private void writeFourBits(byte data) {
-        try {
-            writeCmd((byte) (data | LCD_BACKLIGHT));
-            lcdStrobe(data);
-        } catch (Exception ex) {
-            ComponentLogger.logError("I2CLCDComponent: Error sending split cmd to device " + ex.getMessage());
+    private void writeFourBits(I2CTransaction tx, byte data) {
+        byte value = (byte) ((data & ~En) | getBacklightBit());
+        if (expanderState < 0 || ((expanderState ^ value) & (Rs | Rw | LCD_BACKLIGHT)) != 0) {
+            tx.write(value);
         }
+        lcdStrobe(tx, value);
+        expanderState = value & 0xFF;
     }
 
     /**
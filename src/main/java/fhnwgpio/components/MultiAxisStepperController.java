@@ -0,0 +1,239 @@
+package fhnwgpio.components;
+
+import fhnwgpio.components.helper.ComponentLogger;
+import fhnwgpio.components.helper.StepScheduler;
+import fhnwgpio.components.helper.StepperMotionProfile;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FHNW implementation for moving several stepper motors together, e.g. the axes of an XY(Z) stage. A linear move
+ * interpolates the steps of all axes with the Bresenham algorithm: the axis with the most steps steps on every tick,
+ * the other axes step evenly distributed in between, so all axes do their last step on the last tick.
+ * <p>
+ * All moves of the controller run one after the other on a single thread with one shared step timing, independent of
+ * the number of axes. The ticks follow the motion profile of the controller or the step delay of the slowest axis.
+ */
+public class MultiAxisStepperController {
+    private final StepperMotorComponent[] axes;
+    // the axes in the global lock order, so controllers sharing motors in another order can't deadlock
+    private final StepperMotorComponent[] lockOrder;
+    private final StepScheduler scheduler = new StepScheduler();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MultiAxisStepperController");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile StepperMotionProfile motionProfile;
+
+    /**
+     * Constructor which allows to specify all the different Parameters.
+     *
+     * @param motionProfile The motion profile of the axis with the most steps, or null to step with the step delay of
+     *                      the slowest axis.
+     * @param axes          The stepper motors in the order of the positions of the moves.
+     */
+    public MultiAxisStepperController(StepperMotionProfile motionProfile, StepperMotorComponent... axes) {
+        if (axes == null || axes.length == 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "MultiAxisStepperController: at least one axis is needed");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        for (int i = 0; i < axes.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                if (axes[i] == null || (j < i && axes[i] == axes[j])) {
+                    IllegalArgumentException exception = new IllegalArgumentException(
+                            "MultiAxisStepperController: every axis needs its own stepper motor");
+                    ComponentLogger.logError(exception.getMessage());
+                    throw exception;
+                }
+            }
+        }
+
+        this.axes = axes.clone();
+        this.lockOrder = axes.clone();
+        Arrays.sort(lockOrder, Comparator.comparingLong(StepperMotorComponent::getMotionOrder));
+        this.motionProfile = motionProfile;
+        ComponentLogger.logInfo("MultiAxisStepperController: Controller created for " + axes.length + " axes");
+    }
+
+    /**
+     * Constructor which steps with the step delay of the slowest axis.
+     *
+     * @param axes The stepper motors in the order of the positions of the moves.
+     */
+    public MultiAxisStepperController(StepperMotorComponent... axes) {
+        this(null, axes);
+    }
+
+    /**
+     * Setter of the motion profile. The profile applies to the axis with the most steps, the other axes are slower.
+     *
+     * @param motionProfile The motion profile to be used or null to step with the step delay of the slowest axis.
+     */
+    public void setMotionProfile(StepperMotionProfile motionProfile) {
+        this.motionProfile = motionProfile;
+    }
+
+    /**
+     * Getter of the motion profile.
+     *
+     * @return The current motion profile or null if the controller steps with the step delay of the slowest axis.
+     */
+    public StepperMotionProfile getMotionProfile() {
+        return motionProfile;
+    }
+
+    /**
+     * Getter of the step scheduler, which times the ticks of all axes and records their timing jitter.
+     *
+     * @return The step scheduler of the controller.
+     */
+    public StepScheduler getStepScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Getter of the absolute positions of the axes.
+     *
+     * @return The positions in the order of the axes.
+     */
+    public long[] getPositions() {
+        long[] positions = new long[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            positions[i] = axes[i].getPosition();
+        }
+        return positions;
+    }
+
+    /**
+     * Moves all axes on a straight line to absolute positions without blocking the caller. The move starts after
+     * the previous moves of the controller.
+     *
+     * @param targetPositions The absolute positions in steps, one per axis.
+     * @return Future that completes with the positions of the axes at the end of the move.
+     */
+    public CompletableFuture<long[]> moveTo(long... targetPositions) {
+        checkPositions(targetPositions);
+        long[] targets = targetPositions.clone();
+        return CompletableFuture.supplyAsync(() -> runMove(targets, false), executor);
+    }
+
+    /**
+     * Moves all axes on a straight line by a number of steps without blocking the caller. The steps are relative to
+     * the positions at the start of the move.
+     *
+     * @param steps The number of steps, one per axis. Negative values move backwards.
+     * @return Future that completes with the positions of the axes at the end of the move.
+     */
+    public CompletableFuture<long[]> moveBy(long... steps) {
+        checkPositions(steps);
+        long[] distances = steps.clone();
+        return CompletableFuture.supplyAsync(() -> runMove(distances, true), executor);
+    }
+
+    /**
+     * Stops the thread of the controller. Moves that did not start yet are not executed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        ComponentLogger.logInfo("MultiAxisStepperController: Controller shut down");
+    }
+
+    private void checkPositions(long[] positions) {
+        if (positions == null || positions.length != axes.length) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "MultiAxisStepperController: one position per axis is needed");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+    }
+
+    /**
+     * Reserves all axes in the global lock order and moves them together.
+     *
+     * @param positions Targets or distances of the axes.
+     * @param relative  True if the positions are distances.
+     * @return The positions of the axes at the end of the move.
+     */
+    private long[] runMove(long[] positions, boolean relative) {
+        int locked = 0;
+        try {
+            for (StepperMotorComponent axis : lockOrder) {
+                axis.lockMotion();
+                locked++;
+            }
+
+            long[] distances = new long[axes.length];
+            for (int i = 0; i < axes.length; i++) {
+                distances[i] = relative ? positions[i] : positions[i] - axes[i].getPosition();
+            }
+            interpolate(distances);
+            return getPositions();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                lockOrder[i].unlockMotion();
+            }
+        }
+    }
+
+    /**
+     * Steps all axes by their distances. Every tick the error of each axis grows by its number of steps, whenever it
+     * reaches the number of ticks the axis steps. This spreads the steps of each axis evenly over the move. The errors
+     * start at 0, so the last step of every axis falls on the last tick.
+     *
+     * @param distances The number of steps of the axes, negative values move backwards.
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for a tick.
+     */
+    // tag::MultiAxisStepperControllerInterpolate[]
+    private void interpolate(long[] distances) throws InterruptedException {
+        long ticks = 0;
+        for (long distance : distances) {
+            ticks = Math.max(ticks, Math.abs(distance));
+        }
+        if (ticks == 0) return;
+        if (ticks > Integer.MAX_VALUE) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "MultiAxisStepperController: a move can have at most " + Integer.MAX_VALUE + " steps per axis");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        StepperMotionProfile profile = motionProfile;
+        long[] tickTimes = profile == null ? null : profile.planStepTimes((int) ticks);
+        long tickNanos = TimeUnit.MICROSECONDS.toNanos(getSlowestStepDelayMicros());
+
+        long[] errors = new long[axes.length];
+
+        scheduler.start();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < axes.length; i++) {
+                errors[i] += Math.abs(distances[i]);
+                if (errors[i] >= ticks) {
+                    errors[i] -= ticks;
+                    axes[i].stepOnce(distances[i] > 0 ? 1 : -1);
+                }
+            }
+            scheduler.awaitDeadline(tickTimes == null ? (tick + 1) * tickNanos : tickTimes[tick + 1]);
+        }
+    }
+    // end::MultiAxisStepperControllerInterpolate[]
+
+    private long getSlowestStepDelayMicros() {
+        long stepDelayMicros = 0;
+        for (StepperMotorComponent axis : axes) {
+            stepDelayMicros = Math.max(stepDelayMicros, axis.getStepDelayMicros());
+        }
+        return stepDelayMicros;
+    }
+}
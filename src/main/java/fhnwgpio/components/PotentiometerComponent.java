@@ -5,6 +5,7 @@ import fhnwgpio.components.helper.ComponentLogger;
 import fhnwgpio.grove.Adapter;
 import fhnwgpio.grove.GroveAdapter;
 import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 
 import java.io.IOException;
@@ -16,6 +17,7 @@ public class PotentiometerComponent extends I2CBase {
     private int minValue = 0;
     private int maxValue = 1000;
     private Adapter adapter;
+    private final byte[] readBuffer = new byte[2];
 
     /**
      * Constructor of the PotentiometerComponent with Grove adapter.
@@ -33,6 +35,19 @@ public class PotentiometerComponent extends I2CBase {
     }
     // end::PotentiometerComponentConstructor[]
 
+    /**
+     * Constructor of the PotentiometerComponent with an already opened I2C device, e.g. a device of a bus shared
+     * with other components.
+     *
+     * @param device       The I2C device of the analog Grove adapter
+     * @param groveAdapter The Grove adapter where the potentiometer is connected
+     */
+    public PotentiometerComponent(I2CDevice device, GroveAdapter groveAdapter) {
+        super(device);
+        this.adapter = groveAdapter.getAdapter();
+        ComponentLogger.logInfo("PotentiometerComponent: Potentiometer created for analog grove adapter");
+    }
+
     /**
      * Set the value returned by getValue() to a specific range. The difference between minValue and MaxValue must be
      * between 9 and 1001.
@@ -71,10 +86,16 @@ public class PotentiometerComponent extends I2CBase {
      */
     // tag::PotentiometerComponentGetValue[]
     public int getValue() {
-        byte[] bytes = readData((byte) adapter.getDeviceAddress(), (byte) 2);
-        int readValue = getIntegerFromBytes(bytes[0], bytes[1]);
+        int readValue;
+        synchronized (readBuffer) {
+            readData((byte) adapter.getDeviceAddress(), readBuffer, 0, readBuffer.length);
+            readValue = getIntegerFromBytes(readBuffer[0], readBuffer[1]);
+        }
+        if (ComponentLogger.isDebugEnabled()) {
+            ComponentLogger.logDebug("PotentiometerComponent: Read a value of " + readValue);
+        }
+
         if (minValue == 0 && maxValue == 1000) {
-            ComponentLogger.logInfo("PotentiometerComponent: Read a value of " + readValue);
             return readValue;
         } else {
             int difference = maxValue - minValue;
@@ -82,9 +103,7 @@ public class PotentiometerComponent extends I2CBase {
                 return minValue;
             } else {
                 double reducedValue = ((double) readValue / 1000) * difference;
-                int roundedValue = (int) Math.round(minValue + reducedValue);
-                ComponentLogger.logInfo("PotentiometerComponent: Read a value of " + readValue);
-                return roundedValue;
+                return (int) Math.round(minValue + reducedValue);
             }
         }
     }
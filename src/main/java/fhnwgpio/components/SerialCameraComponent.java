@@ -1,21 +1,33 @@
 package fhnwgpio.components;
 
-import com.pi4j.io.serial.*;
+import fhnwgpio.components.base.Pi4jSerialTransport;
+import fhnwgpio.components.base.SerialTransport;
 import fhnwgpio.components.helper.ComponentLogger;
+import fhnwgpio.components.helper.SerialCameraConfiguration;
+import fhnwgpio.components.helper.SerialCameraConfiguration.Step;
+import fhnwgpio.components.helper.SerialCameraTimeoutException;
+import fhnwgpio.components.helper.SerialCameraTransfer;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * FHNW implementation for the grove serial camera. This class implements the communication protocol and simplifies
@@ -24,39 +36,146 @@ import java.util.Date;
  * Documentation: https://files.seeedstudio.com/wiki/Grove-Serial_Camera_Kit/res/cj-ov528_protocol.pdf
  */
 public class SerialCameraComponent {
-    private Serial serial = null;
+    /**
+     * Baud rate the camera starts with after power up
+     */
+    public static final int INITIAL_BAUD_RATE = 9600;
+
+    /**
+     * Number of times a corrupt package is requested again before the transfer fails
+     */
+    public static final int DEFAULT_MAX_PACKAGE_RETRIES = 5;
+
+    /**
+     * Package sizes measured by the auto-tuning
+     */
+    public static final int[] AUTO_TUNE_PACKAGE_SIZES = { 64, 128, 256, 512, 1024, 2048 };
+
+    /**
+     * Highest share of corrupt packages in percent at which a package size still counts as reliable
+     */
+    public static final int AUTO_TUNE_MAX_CORRUPT_PERCENT = 5;
+
+    private static final int RESPONSE_SIZE = 6;
+    private static final int PACKAGE_HEADER_SIZE = 4;
+    // how often a waiting capture thread checks if it was stopped
+    private static final long CAPTURE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // bounds of the time waited for an answer after a sync request, it doubles after every unanswered request
+    private static final long MIN_SYNC_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long MAX_SYNC_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private SerialTransport serial = null;
+    private int baudRate = INITIAL_BAUD_RATE;
     private int packageSize;
+    private SerialCameraConfiguration.Resolution resolution;
     private int nofNoDataBits = 6;
     private int lowDataSizeBit = 2;
     private int highDataSizeBit = 3;
     private int lowCheckSumBitPosition = -1;
-    private int syncRetryCount = 64;
-    private byte lastWrittenByte = (byte) 0x00;
+    private final EnumMap<Step, Long> timeouts = new EnumMap<>(Step.class);
+    // the package size only has to be sent once per sync
+    private boolean packageSizeConfigured = false;
+    private CaptureSession captureSession;
+
+    private volatile int maxPackageRetries = DEFAULT_MAX_PACKAGE_RETRIES;
+    private final AtomicLong packageCount = new AtomicLong();
+    private final AtomicLong corruptPackageCount = new AtomicLong();
+    private final AtomicLong packageRetryCount = new AtomicLong();
+    private volatile Consumer<SerialCameraTransfer> transferListener;
+    private volatile SerialCameraTransfer lastTransfer;
 
     /**
-     * Constructor of the SerialCameraComponent. Configures the default serial port of the Raspberry Pi.
+     * Constructor of the SerialCameraComponent. Configures the default serial port of the Raspberry Pi, switches the
+     * camera to the configured baud rate and sends the resolution. If the camera does not acknowledge the baud rate,
+     * the communication stays at 9600 baud, if it does not sync at the baud rate, it is switched down to the next lower
+     * baud rate that syncs. If auto-tuning is enabled, the fastest reliable package size is measured
+     * and used instead of the configured one.
      *
-     * @param packageSize Desired package size. Must be between 15 and 2049 bytes.
+     * @param configuration Desired settings of the camera.
      * @throws IOException
      * @throws InterruptedException
      */
-    public SerialCameraComponent(int packageSize) throws IOException, InterruptedException {
+    public SerialCameraComponent(SerialCameraConfiguration configuration) throws IOException, InterruptedException {
+        this(configuration, new Pi4jSerialTransport());
+    }
+
+    /**
+     * Constructor of the SerialCameraComponent for a camera connected through the transport, e.g. a
+     * SimulatedSerialCamera. Switches the camera to the configured baud rate and sends the resolution like the other
+     * constructors.
+     *
+     * @param configuration Desired settings of the camera.
+     * @param transport     Serial port the camera is connected to. It is opened by the component.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public SerialCameraComponent(SerialCameraConfiguration configuration, SerialTransport transport)
+            throws IOException, InterruptedException {
+        int packageSize = configuration.getPackageSize();
+        int baudRate = configuration.getBaudRate();
         if (packageSize < 16 || packageSize > 2048) {
             IllegalArgumentException exception = new IllegalArgumentException(
                     "SerialCameraComponent: Package size needs to be bigger than 15 and smaller than 2049");
             ComponentLogger.logError(exception.getMessage());
             throw exception;
         }
+        if (getBaudDivider(baudRate) == 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Baud rate needs to be 9600, 19200, 38400, 57600 or 115200");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        if (configuration.getResolution() == null) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Resolution must be set");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        for (Step step : Step.values()) {
+            setTimeout(step, configuration.getTimeout(step));
+        }
 
         this.packageSize = packageSize;
-        serial = SerialFactory.createInstance();
-        SerialConfig config = new SerialConfig();
-        config.device(SerialPort.getDefaultPort()).baud(Baud._9600);
-        serial.open(config);
+        this.resolution = configuration.getResolution();
+        serial = transport;
+        openSerial(INITIAL_BAUD_RATE);
 
         ComponentLogger.logInfo("SerialCameraComponent: SerialCamera created with a packageSize of " + packageSize);
         initializeSerialBusCommunication();
+        if (baudRate != INITIAL_BAUD_RATE) {
+            negotiateBaudRate(baudRate);
+        }
         sendSettingsToCamera();
+        if (configuration.isAutoTunePackageSize()) {
+            autoTunePackageSize();
+        }
+    }
+
+    /**
+     * Constructor of the SerialCameraComponent. Configures the default serial port of the Raspberry Pi and switches
+     * the camera to the desired baud rate. If the camera does not acknowledge the baud rate, the communication stays
+     * at 9600 baud, if it does not sync at the baud rate, it is switched down to the next lower baud rate that syncs.
+     *
+     * @param packageSize Desired package size. Must be between 15 and 2049 bytes.
+     * @param baudRate    Desired baud rate. Must be 9600, 19200, 38400, 57600 or 115200.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public SerialCameraComponent(int packageSize, int baudRate) throws IOException, InterruptedException {
+        this(new SerialCameraConfiguration().packageSize(packageSize).baudRate(baudRate));
+    }
+
+    /**
+     * Constructor of the SerialCameraComponent. Configures the default serial port of the Raspberry Pi and
+     * communicates at 9600 baud, the baud rate the camera starts with.
+     *
+     * @param packageSize Desired package size. Must be between 15 and 2049 bytes.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public SerialCameraComponent(int packageSize) throws IOException, InterruptedException {
+        this(packageSize, INITIAL_BAUD_RATE);
     }
 
     /**
@@ -77,9 +196,104 @@ public class SerialCameraComponent {
      * @throws IOException
      * @throws InterruptedException
      */
-    public byte[] getImageAsJpgBytes() throws IOException, InterruptedException {
+    public synchronized byte[] getImageAsJpgBytes() throws IOException, InterruptedException {
         int pictureLength = getPictureLengthFromCamera();
-        return getJpgBytes(pictureLength);
+        // receiveJpg never hands over more than the announced length
+        byte[] picture = new byte[pictureLength];
+        int[] position = { 0 };
+        receiveJpg(pictureLength, (data, offset, length) -> {
+            System.arraycopy(data, offset, picture, position[0], length);
+            position[0] += length;
+        });
+        return picture;
+    }
+
+    /**
+     * Requests a jpg image from the camera and writes the data of every verified package to the stream as soon as it
+     * arrived. The jpg bytes are written unchanged. The stream is not closed.
+     *
+     * @param out The stream the jpg image is written to.
+     * @return Number of bytes written to the stream.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized long captureJpg(OutputStream out) throws IOException, InterruptedException {
+        int pictureLength = getPictureLengthFromCamera();
+        return receiveJpg(pictureLength, out::write);
+    }
+
+    /**
+     * Requests a jpg image from the camera and writes the data of every verified package to the channel (e.g. a
+     * FileChannel) as soon as it arrived. The jpg bytes are written unchanged. The channel is not closed.
+     *
+     * @param channel The channel the jpg image is written to.
+     * @return Number of bytes written to the channel.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized long captureJpg(WritableByteChannel channel) throws IOException, InterruptedException {
+        int pictureLength = getPictureLengthFromCamera();
+        return receiveJpg(pictureLength, (data, offset, length) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Starts capturing pictures continuously on a background thread. The camera is configured once and every frame
+     * only needs the snapshot and get picture commands. The frames are put into a queue with the given depth. If the
+     * queue is full, the capture waits for free space before the next snapshot is taken.
+     *
+     * @param queueDepth     Number of frames the queue can hold.
+     * @param intervalMillis Minimum time between two snapshots, 0 to capture as fast as possible.
+     * @return The running capture session, the frames can be taken from its queue.
+     */
+    public CaptureSession startContinuousCapture(int queueDepth, long intervalMillis) {
+        if (queueDepth < 1) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Queue depth needs to be at least 1");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        return startContinuousCapture(new ArrayBlockingQueue<>(queueDepth), intervalMillis);
+    }
+
+    /**
+     * Starts capturing pictures continuously on a background thread and puts the frames into the queue. If the queue
+     * is full, the capture waits for free space before the next snapshot is taken.
+     *
+     * @param frames         The queue the jpg images are put into.
+     * @param intervalMillis Minimum time between two snapshots, 0 to capture as fast as possible.
+     * @return The running capture session.
+     */
+    public CaptureSession startContinuousCapture(BlockingQueue<byte[]> frames, long intervalMillis) {
+        CaptureSession session = new CaptureSession(frames);
+        startCaptureThread(session, intervalMillis, frame -> {
+            while (session.isRunning()) {
+                if (frames.offer(frame, CAPTURE_POLL_NANOS, TimeUnit.NANOSECONDS)) return true;
+            }
+            return false;
+        });
+        return session;
+    }
+
+    /**
+     * Starts capturing pictures continuously on a background thread and hands every frame to the callback. The
+     * callback runs on the capture thread, the next snapshot is taken after it returned.
+     *
+     * @param frameConsumer  Receives the jpg images.
+     * @param intervalMillis Minimum time between two snapshots, 0 to capture as fast as possible.
+     * @return The running capture session.
+     */
+    public CaptureSession startContinuousCapture(Consumer<byte[]> frameConsumer, long intervalMillis) {
+        CaptureSession session = new CaptureSession(null);
+        startCaptureThread(session, intervalMillis, frame -> {
+            frameConsumer.accept(frame);
+            return true;
+        });
+        return session;
     }
 
     /**
@@ -92,8 +306,7 @@ public class SerialCameraComponent {
      * @throws InterruptedException
      */
     public String saveImageAsJpg(String fileName) throws IOException, InterruptedException {
-        int pictureLength = getPictureLengthFromCamera();
-        return saveAsJpg(fileName, getJpgBytes(pictureLength));
+        return saveAsJpg(fileName);
     }
 
     /**
@@ -113,8 +326,7 @@ public class SerialCameraComponent {
         if (!Files.exists(path)) {
             Files.createDirectory(path);
         }
-        int pictureLength = getPictureLengthFromCamera();
-        return saveAsJpg(absolutePath + "/" + fileName, getJpgBytes(pictureLength));
+        return saveAsJpg(absolutePath + "/" + fileName);
     }
 
     /**
@@ -129,47 +341,157 @@ public class SerialCameraComponent {
             int tryCount = 0;
             byte[] syncCommand = { (byte) 0xaa, 0x0d, 0x00, 0x00, 0x00, 0x00 };
             byte[] ackCommand = { (byte) 0xaa, 0x0e, 0x0d, 0x00, 0x00, 0x00 };
+            long syncTimeoutMillis = getTimeout(Step.SYNC);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncTimeoutMillis);
+            // the first wait covers the sync request and both answers, every unanswered request doubles it
+            long backoffNanos = getByteNanos() * RESPONSE_SIZE * 3 + MIN_SYNC_BACKOFF_NANOS;
 
             ComponentLogger.logInfo("SerialCameraComponent: Initializing communication with the camera");
+            packageSizeConfigured = false;
+            clearDataFromSerialInput();
+
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SerialCameraTimeoutException(Step.SYNC, syncTimeoutMillis, 0, 2 * RESPONSE_SIZE);
+                }
 
-            while (serial.available() == 0 && tryCount < syncRetryCount) {
                 serial.write(syncCommand);
                 tryCount++;
-                Thread.sleep(100);
-            }
-
-            if (tryCount >= syncRetryCount) {
-                IOException exception = new IOException(
-                        "SerialCameraComponent: Tried to sync with camera for " + tryCount + " without success");
-                ComponentLogger.logError(exception.getMessage());
-                throw exception;
+                if (waitForInput(Math.min(backoffNanos, remaining)) && receiveSyncAnswer(deadline)) {
+                    break;
+                }
+                discardPendingInput();
+                backoffNanos = Math.min(backoffNanos * 2, MAX_SYNC_BACKOFF_NANOS);
             }
 
             ComponentLogger.logInfo("SerialCameraComponent: Camera responded after " + tryCount + " requests");
-            byte[] bytes = serial.read(6);
+            ComponentLogger.logInfo("SerialCameraComponent: Sending sync acknowledgement to camera");
+            serial.write(ackCommand);
+            // answers to earlier sync requests that arrived late
+            discardPendingInput();
+            ComponentLogger.logInfo("SerialCameraComponent: Serial bus communication ready");
+        } catch (Exception ex) {
+            ComponentLogger.logError("SerialCameraComponent: " + ex.getMessage());
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the answer of the camera to a sync request: an acknowledgement followed by a sync of the camera.
+     *
+     * @param deadline Time in System.nanoTime() at which the sync times out.
+     * @return True if the answer was a valid acknowledgement and sync.
+     * @throws IOException          Thrown if the answer is not complete before the deadline
+     * @throws InterruptedException
+     */
+    private boolean receiveSyncAnswer(long deadline) throws IOException, InterruptedException {
+        byte[] bytes = new byte[RESPONSE_SIZE];
+        long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        readFully(bytes, 0, RESPONSE_SIZE, Step.SYNC, remainingMillis);
+
+        if (bytes[0] != (byte) 0xaa || bytes[1] != 0x0e || bytes[2] != 0x0d || bytes[4] != 0x00 || bytes[5] != 0x00) {
+            return false;
+        }
+        ComponentLogger.logInfo("SerialCameraComponent: Received response is a valid acknowledgement");
+        ComponentLogger.logInfo("SerialCameraComponent: Waiting for sync from camera");
+
+        remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        readFully(bytes, 0, RESPONSE_SIZE, Step.SYNC, remainingMillis);
+        if (bytes[0] != (byte) 0xaa || bytes[1] != 0x0d || bytes[2] != 0x00 || bytes[3] != 0x00 || bytes[4] != 0x00
+                || bytes[5] != 0x00) {
+            return false;
+        }
+        ComponentLogger.logInfo("SerialCameraComponent: Received sync from the camera");
+        return true;
+    }
+    // end::SerialCamInit[]
+
+    /**
+     * Switches the camera to a higher baud rate. The camera acknowledges the command at the old baud rate and
+     * expects the next sync at the new one. If there is no acknowledgement, the communication stays at the old baud
+     * rate. Once the camera acknowledged, it only listens at the new baud rate, so if it does not sync there, the
+     * camera is switched down through the lower baud rates from the rate it listens at, until one of them syncs.
+     *
+     * @param newBaudRate The desired baud rate.
+     * @throws IOException          Thrown if the camera does not sync at any baud rate up to the desired one.
+     * @throws InterruptedException
+     */
+    private void negotiateBaudRate(int newBaudRate) throws IOException, InterruptedException {
+        ComponentLogger.logInfo("SerialCameraComponent: Requesting a baud rate of " + newBaudRate);
+        serial.write(getSetBaudRateCommand(newBaudRate));
+
+        byte[] bytes;
+        try {
+            bytes = readResponse(Step.BAUD_RATE);
+        } catch (IOException ex) {
+            ComponentLogger.logInfo("SerialCameraComponent: No response to the baud rate command, staying at "
+                    + baudRate + " baud");
+            clearDataFromSerialInput();
+            return;
+        }
+
+        if (bytes[0] != (byte) 0xaa || bytes[1] != (byte) 0x0e || bytes[2] != (byte) 0x07) {
+            ComponentLogger.logInfo("SerialCameraComponent: Baud rate was not acknowledged, staying at " + baudRate
+                    + " baud");
             clearDataFromSerialInput();
+            return;
+        }
 
-            if (bytes[0] == 0xaa && bytes[1] == 0x0e && bytes[2] == 0x0d && bytes[4] == 0x00 && bytes[5] == 0x00) {
-                ComponentLogger.logInfo("SerialCameraComponent: Received response is a valid acknowledgement");
-                ComponentLogger.logInfo("SerialCameraComponent: Waiting for sync from camera");
-                bytes = serial.read(6);
-
-                if (bytes[0] == 0xaa && bytes[1] == 0x0d && bytes[2] == 0x00 && bytes[3] == 0x00 && bytes[4] == 0x00
-                        && bytes[5] == 0x00) {
-                    ComponentLogger.logInfo("SerialCameraComponent: Received sync from the camera");
-                    ComponentLogger.logInfo("SerialCameraComponent: Sending sync acknowledgement to camera");
-                    serial.write(ackCommand);
-                    ComponentLogger.logInfo("SerialCameraComponent: Serial bus communication ready");
+        int rate = newBaudRate;
+        while (true) {
+            openSerial(rate);
+            try {
+                initializeSerialBusCommunication();
+                ComponentLogger.logInfo("SerialCameraComponent: Communicating at " + baudRate + " baud");
+                return;
+            } catch (IOException ex) {
+                if (rate == INITIAL_BAUD_RATE) {
+                    throw new IOException("SerialCameraComponent: No sync at " + newBaudRate
+                            + " baud or any lower baud rate", ex);
                 }
             }
 
+            // the answers can't be read at this rate, but the camera may still understand the commands
+            int lowerRate = getLowerBaudRate(rate);
+            ComponentLogger.logInfo("SerialCameraComponent: No sync at " + rate + " baud, stepping down to "
+                    + lowerRate + " baud");
+            serial.write(getSetBaudRateCommand(lowerRate));
+            try {
+                readResponse(Step.BAUD_RATE);
+            } catch (IOException ex) {
+                // the acknowledgement is expected to be unreadable, the wait gives the camera time to switch
+            }
             clearDataFromSerialInput();
-        } catch (Exception ex) {
-            ComponentLogger.logError("SerialCameraComponent: " + ex.getMessage());
-            throw ex;
+            rate = lowerRate;
         }
     }
-    // end::SerialCamInit[]
+
+    /**
+     * Creates the set baud rate command with the dividers according to the camera documentation.
+     *
+     * @param baudRate The baud rate.
+     * @return The command.
+     */
+    private static byte[] getSetBaudRateCommand(int baudRate) {
+        return new byte[] { (byte) 0xaa, 0x07, getBaudDivider(baudRate), 0x01, 0x00, 0x00 };
+    }
+
+    /**
+     * (Re)opens the serial port with the baud rate.
+     *
+     * @param newBaudRate The baud rate.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void openSerial(int newBaudRate) throws IOException, InterruptedException {
+        if (serial.isOpen()) {
+            serial.close();
+        }
+
+        serial.open(newBaudRate);
+        baudRate = newBaudRate;
+    }
 
     /**
      * Transmitting of the desired camera settings.
@@ -179,19 +501,18 @@ public class SerialCameraComponent {
      */
     private void sendSettingsToCamera() throws InterruptedException, IOException {
         try {
-            byte[] initialCommand = { (byte) 0xaa, 0x01, 0x00, 0x07, 0x03, 0x07 };
+            // jpg pictures, 160x120 preview resolution and the jpg resolution
+            byte[] initialCommand = { (byte) 0xaa, 0x01, 0x00, 0x07, 0x03, resolution.getCode() };
 
-            ComponentLogger.logInfo("SerialCameraComponent: Sending settings to the camera");
+            ComponentLogger.logInfo("SerialCameraComponent: Sending settings to the camera, resolution "
+                    + resolution.getWidth() + "x" + resolution.getHeight());
             serial.write(initialCommand);
 
-            while (serial.available() < 6) {
-                Thread.sleep(10);
-            }
-
+            byte[] bytes = readResponse(Step.SETTINGS);
             ComponentLogger.logInfo("SerialCameraComponent: Received a response from the camera");
-            byte[] bytes = serial.read(6);
 
-            if (bytes[0] == 0xaa && bytes[1] == 0x0e && bytes[2] == 0x01 && bytes[4] == 0x00 && bytes[5] == 0x00) {
+            if (bytes[0] == (byte) 0xaa && bytes[1] == 0x0e && bytes[2] == 0x01 && bytes[4] == 0x00
+                    && bytes[5] == 0x00) {
                 ComponentLogger.logInfo("SerialCameraComponent: Received response is a valid settings acknowledgement");
                 ComponentLogger.logInfo("SerialCameraComponent: Settings where successfully sent to the camera");
             }
@@ -216,31 +537,32 @@ public class SerialCameraComponent {
                 (byte) ((packageSize >> 8) & 0xff), 0x00 };
         byte[] snapshotCommand = { (byte) 0xaa, 0x05, 0x00, 0x00, 0x00, 0x00 };
         byte[] getPictureCommand = { (byte) 0xaa, 0x04, 0x01, 0x00, 0x00, 0x00 };
+        byte[] bytes;
 
-        ComponentLogger.logInfo("SerialCameraComponent: Sending the desired package size to the camera");
-        serial.write(setPackageSizeCommand);
+        if (!packageSizeConfigured) {
+            ComponentLogger.logInfo("SerialCameraComponent: Sending the desired package size to the camera");
+            serial.write(setPackageSizeCommand);
 
-        while (serial.available() < 6) {
-            Thread.sleep(10);
-        }
-
-        ComponentLogger.logInfo("SerialCameraComponent: Received a response from the camera");
-        byte[] bytes = serial.read(6);
+            bytes = readResponse(Step.PACKAGE_SIZE);
+            ComponentLogger.logInfo("SerialCameraComponent: Received a response from the camera");
 
-        if (bytes[0] == (byte) 0xaa && bytes[1] == (byte) 0x0e && bytes[2] == (byte) 0x06 && bytes[4] == (byte) 0x00
-                && bytes[5] == (byte) 0x00) {
+            if (bytes[0] != (byte) 0xaa || bytes[1] != (byte) 0x0e || bytes[2] != (byte) 0x06
+                    || bytes[4] != (byte) 0x00 || bytes[5] != (byte) 0x00) {
+                clearDataFromSerialInput();
+                IOException exception = new IOException("SerialCameraComponent: The camera rejected the package size "
+                        + packageSize);
+                ComponentLogger.logError(exception.getMessage());
+                throw exception;
+            }
             ComponentLogger.logInfo("SerialCameraComponent: Response was a valid package size acknowledgement");
+            packageSizeConfigured = true;
         }
 
         ComponentLogger.logInfo("SerialCameraComponent: Sending snapshot command");
         serial.write(snapshotCommand);
 
-        while (serial.available() < 6) {
-            Thread.sleep(10);
-        }
-
+        bytes = readResponse(Step.SNAPSHOT);
         ComponentLogger.logInfo("SerialCameraComponent: Received a response from the camera");
-        bytes = serial.read(6);
 
         if (bytes[0] == (byte) 0xaa && bytes[1] == (byte) 0x0e && bytes[2] == (byte) 0x05 && bytes[4] == (byte) 0x00
                 && bytes[5] == (byte) 0x00) {
@@ -250,21 +572,17 @@ public class SerialCameraComponent {
         ComponentLogger.logInfo("SerialCameraComponent: Sending get picture length command");
         serial.write(getPictureCommand);
 
-        while (serial.available() < 6) {
-            Thread.sleep(10);
-        }
-
+        bytes = readResponse(Step.PICTURE_LENGTH);
         ComponentLogger.logInfo("SerialCameraComponent: Received a response from the camera");
-        bytes = serial.read(6);
 
         if (bytes[0] == (byte) 0xaa && bytes[1] == (byte) 0x0e && bytes[2] == (byte) 0x04 && bytes[4] == (byte) 0x00
                 && bytes[5] == (byte) 0x00) {
             ComponentLogger.logInfo("SerialCameraComponent: Response was a valid picture length acknowledgement");
             ComponentLogger.logInfo("SerialCameraComponent: Reading the next 6 bytes to get the picture length");
-            bytes = serial.read(6);
+            bytes = readResponse(Step.PICTURE_LENGTH);
 
             if (bytes[0] == (byte) 0xaa && bytes[1] == 0x0a && bytes[2] == 0x01) {
-                pictureLength = (int) bytes[3] + (bytes[4] << 8) + (bytes[5] << 16);
+                pictureLength = (bytes[3] & 0xff) | ((bytes[4] & 0xff) << 8) | ((bytes[5] & 0xff) << 16);
                 ComponentLogger.logInfo("SerialCameraComponent: Picture length is: " + pictureLength);
             }
         }
@@ -274,22 +592,36 @@ public class SerialCameraComponent {
     // end::SerialCamGetPictureLength[]
 
     /**
-     * Request the picture from the camera package by package. Returns the image as a byte array.
+     * Request the picture from the camera package by package and hands the data of every verified package to the
+     * consumer. Every package is read as a whole: first the header with the package id and the data size, then the
+     * data and the check sum. The consumer never receives more than the announced picture length.
      *
      * @param pictureLength Picture length according to serial camera.
-     * @return The jpg image as a byte array.
-     * @throws IOException
+     * @param consumer      Receives the data of the packages in order.
+     * @return Number of jpg bytes received.
+     * @throws IOException Thrown if no picture length was announced or the picture is longer or shorter than
+     *                     announced
      * @throws InterruptedException
      */
     // tag::SerialCamGetPicture[]
-    private byte[] getJpgBytes(int pictureLength) throws IOException, InterruptedException {
+    private long receiveJpg(int pictureLength, PayloadConsumer consumer) throws IOException, InterruptedException {
+        if (pictureLength <= 0) {
+            IOException exception = new IOException("SerialCameraComponent: The camera did not announce a picture");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
         byte[] receiveDataPackageCommand = { (byte) 0xaa, 0x0e, 0x00, 0x00, 0x00, 0x00 };
         byte[] ackPackageEndCommand = { (byte) 0xaa, 0x0e, 0x00, 0x00, (byte) 0xf0, (byte) 0xF0 };
 
         int successCount = 0;
+        int retries = 0;
+        int frameRetries = 0;
         boolean pictureEnd = false;
-        ByteArrayOutputStream camStream = new ByteArrayOutputStream();
-        ByteBuffer imageBuffer = ByteBuffer.allocate(packageSize);
+        long startTime = System.nanoTime();
+        int maxDataSize = packageSize - nofNoDataBits;
+        long totalBytes = 0;
+        byte[] packageBuffer = new byte[packageSize];
 
         while (!pictureEnd) {
             receiveDataPackageCommand[4] = (byte) successCount;
@@ -297,89 +629,345 @@ public class SerialCameraComponent {
 
             serial.write(receiveDataPackageCommand);
 
-            while (imageBuffer.position() < packageSize && !pictureEnd) {
-                pictureEnd = lastPackageComplete(imageBuffer);
-                if (!pictureEnd) {
-                    Thread.sleep(10);
-                    imageBuffer.put(serial.read());
+            // the check sum is summed up while the header and the data arrive
+            String error = null;
+            int byteCount = 0;
+            try {
+                byte calculatedCheckSum = readFully(packageBuffer, 0, PACKAGE_HEADER_SIZE, Step.PACKAGE);
+                byteCount = getIntegerFromBytes(packageBuffer[lowDataSizeBit], packageBuffer[highDataSizeBit]);
+                if (byteCount > maxDataSize) {
+                    error = "invalid data size " + byteCount;
+                } else {
+                    calculatedCheckSum += readFully(packageBuffer, PACKAGE_HEADER_SIZE, byteCount, Step.PACKAGE);
+                    int packageLength = byteCount + nofNoDataBits;
+                    readFully(packageBuffer, PACKAGE_HEADER_SIZE + byteCount, nofNoDataBits - PACKAGE_HEADER_SIZE,
+                            Step.PACKAGE);
+                    byte receivedCheckSum = packageBuffer[packageLength - 1 + lowCheckSumBitPosition];
+                    if (calculatedCheckSum != receivedCheckSum) {
+                        error = "check sum " + receivedCheckSum + " instead of " + calculatedCheckSum;
+                    }
                 }
+            } catch (IOException ex) {
+                error = ex.getMessage();
             }
 
-            byte[] receivedData = imageBuffer.array();
-            imageBuffer.position(0);
-            byte calculatedCheckSum = getCheckSum(receivedData);
-            byte receivedCheckSum = receivedData[receivedData.length - 1 + lowCheckSumBitPosition];
-
-            if (calculatedCheckSum == receivedCheckSum || pictureEnd) {
-                int byteCount = getIntegerFromBytes(receivedData[lowDataSizeBit], receivedData[highDataSizeBit]);
-                lastWrittenByte = receivedData[receivedData.length - 3];
-                camStream.write(receivedData, 4, byteCount);
-                ComponentLogger.logInfo("SerialCameraComponent: Package at " + successCount + " successfully handled");
+            if (error == null) {
+                if (totalBytes + byteCount > pictureLength) {
+                    serial.write(ackPackageEndCommand);
+                    IOException exception = new IOException("SerialCameraComponent: Received more than the "
+                            + "announced " + pictureLength + " bytes");
+                    ComponentLogger.logError(exception.getMessage());
+                    throw exception;
+                }
+                consumer.accept(packageBuffer, PACKAGE_HEADER_SIZE, byteCount);
+                totalBytes += byteCount;
+                // the last package is the first one that is not full or that completes the announced length, an end
+                // tag inside the picture, e.g. the one of an embedded thumbnail, does not end it
+                pictureEnd = byteCount < maxDataSize || totalBytes == pictureLength;
+                if (ComponentLogger.isTraceEnabled()) {
+                    ComponentLogger.logTrace("SerialCameraComponent: Package at " + successCount
+                            + " successfully handled");
+                }
+                packageCount.incrementAndGet();
                 successCount++;
+                retries = 0;
             } else {
-                ComponentLogger.logInfo("SerialCameraComponent: Calculated check sum is " + calculatedCheckSum);
-                ComponentLogger.logInfo("SerialCameraComponent: Received check sum is " + receivedCheckSum);
-                ComponentLogger.logInfo("SerialCameraComponent: Package error at package " + successCount);
-                ComponentLogger.logInfo("SerialCameraComponent:  => retry");
+                corruptPackageCount.incrementAndGet();
+                discardPendingInput();
+                if (retries >= maxPackageRetries) {
+                    IOException exception = new IOException("SerialCameraComponent: Package " + successCount
+                            + " still corrupt after " + retries + " retries (" + error + ")");
+                    ComponentLogger.logError(exception.getMessage());
+                    throw exception;
+                }
+                retries++;
+                frameRetries++;
+                packageRetryCount.incrementAndGet();
+                if (ComponentLogger.isTraceEnabled()) {
+                    ComponentLogger.logTrace("SerialCameraComponent: Package " + successCount + " corrupt (" + error
+                            + ") => retry " + retries + " of " + maxPackageRetries);
+                }
             }
         }
 
-        ComponentLogger.logInfo("SerialCameraComponent: Read a total of " + camStream.size() + " bytes");
-        ComponentLogger.logInfo("SerialCameraComponent: Pure picture length was " + pictureLength);
-        ComponentLogger.logInfo("SerialCameraComponent: Sending package end acknowledgement to camera");
         serial.write(ackPackageEndCommand);
 
-        return camStream.toByteArray();
+        SerialCameraTransfer transfer = new SerialCameraTransfer(successCount, totalBytes, frameRetries,
+                System.nanoTime() - startTime, packageSize, baudRate);
+        ComponentLogger.logInfo("SerialCameraComponent: Received " + transfer);
+        lastTransfer = transfer;
+        Consumer<SerialCameraTransfer> listener = transferListener;
+        if (listener != null) {
+            listener.accept(transfer);
+        }
+
+        if (totalBytes < pictureLength) {
+            IOException exception = new IOException("SerialCameraComponent: Picture truncated, received "
+                    + totalBytes + " of " + pictureLength + " bytes");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        return totalBytes;
     }
     // end::SerialCamGetPicture[]
 
     /**
-     * Saves the byte array in a file with the file name specified.
+     * Requests a jpg image from the camera and writes it unchanged into a file with the file name specified. The file
+     * is removed again if the capture fails.
      *
      * @param defaultFileName The desired file name.
-     * @param imageBytes      The jpg image as a byte array.
      * @return The file name of the saved image.
      * @throws IOException
+     * @throws InterruptedException
      */
-    private String saveAsJpg(String defaultFileName, byte[] imageBytes) throws IOException {
+    private String saveAsJpg(String defaultFileName) throws IOException, InterruptedException {
         String fileName = getFileName(defaultFileName);
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-        ImageIO.write(image, "JPG", new File(fileName));
+        Path path = Paths.get(fileName);
+        boolean saved = false;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            captureJpg(channel);
+            saved = true;
+        } finally {
+            if (!saved) {
+                Files.deleteIfExists(path);
+            }
+        }
+
         ComponentLogger.logInfo("SerialCameraComponent: Picture saved in file " + fileName);
         return fileName;
     }
 
     /**
-     * Checks if the end tag of the jpg was received. JPG files end with 0xFF 0xD9.
+     * Returns the next lower baud rate the camera supports.
      *
-     * @param imageBuffer Byte buffer.
-     * @return Boolean indicating if the last package was received.
+     * @param baudRate A supported baud rate above the initial one.
+     * @return The next lower baud rate.
      */
-    private boolean lastPackageComplete(ByteBuffer imageBuffer) {
-        if (imageBuffer.position() == nofNoDataBits + 1) {
-            byte endTagD9 = imageBuffer.get(imageBuffer.position() - 3);
-            return lastWrittenByte == (byte) 0xFF && endTagD9 == (byte) 0xD9;
-        } else if (imageBuffer.position() > nofNoDataBits + 1) {
-            byte endTagFF = imageBuffer.get(imageBuffer.position() - 4);
-            byte endTagD9 = imageBuffer.get(imageBuffer.position() - 3);
-            return endTagFF == (byte) 0xFF && endTagD9 == (byte) 0xD9;
+    private static int getLowerBaudRate(int baudRate) {
+        switch (baudRate) {
+            case 115200:
+                return 57600;
+            case 57600:
+                return 38400;
+            case 38400:
+                return 19200;
+            default:
+                return INITIAL_BAUD_RATE;
         }
+    }
 
-        return false;
+    /**
+     * Returns the first divider of the set baud rate command according to the camera documentation. The second
+     * divider is always 0x01.
+     *
+     * @param baudRate The baud rate.
+     * @return The divider or 0 if the baud rate is not supported.
+     */
+    private static byte getBaudDivider(int baudRate) {
+        switch (baudRate) {
+            case 9600:
+                return (byte) 0xbf;
+            case 19200:
+                return 0x5f;
+            case 38400:
+                return 0x2f;
+            case 57600:
+                return 0x1f;
+            case 115200:
+                return 0x0f;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Captures a test picture with every package size of AUTO_TUNE_PACKAGE_SIZES and measures the throughput and the
+     * share of corrupt packages. The fastest package size with at most AUTO_TUNE_MAX_CORRUPT_PERCENT corrupt packages
+     * is used for all further pictures. If no package size is reliable, the package size stays unchanged.
+     *
+     * @return The package size used from now on.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized int autoTunePackageSize() throws IOException, InterruptedException {
+        int originalPackageSize = packageSize;
+        int bestPackageSize = -1;
+        long bestBytesPerSecond = 0;
+
+        // an interrupted or failed tuning keeps the original package size instead of the last candidate
+        int tunedPackageSize = originalPackageSize;
+        try {
+            ComponentLogger.logInfo("SerialCameraComponent: Auto-tuning the package size");
+            for (int candidate : AUTO_TUNE_PACKAGE_SIZES) {
+                usePackageSize(candidate);
+                long packagesBefore = packageCount.get();
+                long corruptBefore = corruptPackageCount.get();
+                long startTime = System.nanoTime();
+                long bytes;
+
+                try {
+                    bytes = receiveJpg(getPictureLengthFromCamera(), (data, offset, length) -> {
+                    });
+                } catch (IOException ex) {
+                    ComponentLogger.logInfo("SerialCameraComponent: Package size " + candidate + " failed: "
+                            + ex.getMessage());
+                    discardPendingInput();
+                    continue;
+                }
+
+                long durationNanos = Math.max(1, System.nanoTime() - startTime);
+                long bytesPerSecond = bytes * TimeUnit.SECONDS.toNanos(1) / durationNanos;
+                long packages = packageCount.get() - packagesBefore;
+                long corrupt = corruptPackageCount.get() - corruptBefore;
+                boolean reliable = corrupt * 100 <= (packages + corrupt) * AUTO_TUNE_MAX_CORRUPT_PERCENT;
+                ComponentLogger.logInfo("SerialCameraComponent: Package size " + candidate + ": " + bytesPerSecond
+                        + " bytes/s, " + corrupt + " of " + (packages + corrupt) + " packages corrupt");
+
+                if (reliable && bytesPerSecond > bestBytesPerSecond) {
+                    bestPackageSize = candidate;
+                    bestBytesPerSecond = bytesPerSecond;
+                }
+            }
+
+            if (bestPackageSize < 0) {
+                ComponentLogger.logInfo("SerialCameraComponent: No reliable package size found, keeping "
+                        + originalPackageSize);
+            } else {
+                ComponentLogger.logInfo("SerialCameraComponent: Using a package size of " + bestPackageSize);
+                tunedPackageSize = bestPackageSize;
+            }
+        } finally {
+            usePackageSize(tunedPackageSize);
+        }
+        return packageSize;
+    }
+
+    /**
+     * @return The size of the packages the pictures are transferred in.
+     */
+    public synchronized int getPackageSize() {
+        return packageSize;
+    }
+
+    /**
+     * @return The resolution of the jpg pictures.
+     */
+    public SerialCameraConfiguration.Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Changes the package size. It is sent to the camera with the next picture.
+     *
+     * @param newPackageSize The package size.
+     */
+    private void usePackageSize(int newPackageSize) {
+        packageSize = newPackageSize;
+        packageSizeConfigured = false;
+    }
+
+    /**
+     * Sets the time the camera may take to answer a protocol step. For the sync it is the time for all sync requests
+     * together, for the other steps it comes on top of the transfer time of the answer.
+     *
+     * @param step          The protocol step.
+     * @param timeoutMillis The timeout in milliseconds.
+     */
+    public synchronized void setTimeout(Step step, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Timeout of " + step + " needs to be positive");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        timeouts.put(step, timeoutMillis);
+    }
+
+    /**
+     * @param step The protocol step.
+     * @return The time the camera may take to answer the protocol step in milliseconds.
+     */
+    public synchronized long getTimeout(Step step) {
+        return timeouts.get(step);
     }
 
     /**
-     * Calculates the check sum of a package according to the camera documentation.
+     * Sets a listener that receives the metrics of every picture transfer. It is called on the thread that captured
+     * the picture.
      *
-     * @param bytes The bytes of the package.
-     * @return Byte of the calculated check sum.
+     * @param transferListener The listener, null to remove it.
      */
-    private byte getCheckSum(byte[] bytes) {
-        byte result = 0;
-        for (byte b : Arrays.copyOf(bytes, bytes.length - 2)) {
-            result += b;
+    public void setTransferListener(Consumer<SerialCameraTransfer> transferListener) {
+        this.transferListener = transferListener;
+    }
+
+    /**
+     * @return The metrics of the last picture transfer, null if no picture was captured yet.
+     */
+    public SerialCameraTransfer getLastTransfer() {
+        return lastTransfer;
+    }
+
+    /**
+     * Sets how many times a corrupt package is requested again before the transfer fails.
+     *
+     * @param maxPackageRetries Number of retries per package, 0 to fail on the first corrupt package.
+     */
+    public void setMaxPackageRetries(int maxPackageRetries) {
+        if (maxPackageRetries < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Number of package retries must not be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
         }
-        return result;
+        this.maxPackageRetries = maxPackageRetries;
+    }
+
+    /**
+     * @return Number of times a corrupt package is requested again before the transfer fails.
+     */
+    public int getMaxPackageRetries() {
+        return maxPackageRetries;
+    }
+
+    /**
+     * @return Number of packages received correctly since the last reset.
+     */
+    public long getPackageCount() {
+        return packageCount.get();
+    }
+
+    /**
+     * @return Number of packages with a wrong check sum, an invalid size or missing bytes since the last reset.
+     */
+    public long getCorruptPackageCount() {
+        return corruptPackageCount.get();
+    }
+
+    /**
+     * @return Number of packages requested again since the last reset.
+     */
+    public long getPackageRetryCount() {
+        return packageRetryCount.get();
+    }
+
+    /**
+     * Sets the package, corrupt package and retry counters back to 0.
+     */
+    public void resetTransferStatistics() {
+        packageCount.set(0);
+        corruptPackageCount.set(0);
+        packageRetryCount.set(0);
+    }
+
+    /**
+     * @return The baud rate the camera communicates with.
+     */
+    public int getBaudRate() {
+        return baudRate;
     }
 
     /**
@@ -406,6 +994,193 @@ public class SerialCameraComponent {
 
     }
 
+    /**
+     * Starts the thread of a continuous capture. Only one continuous capture can run at a time.
+     *
+     * @param session        The session of the capture.
+     * @param intervalMillis Minimum time between two snapshots.
+     * @param sink           Receives the frames.
+     */
+    private synchronized void startCaptureThread(CaptureSession session, long intervalMillis, FrameSink sink) {
+        if (intervalMillis < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SerialCameraComponent: Capture interval must not be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        if (captureSession != null && captureSession.isRunning()) {
+            IllegalStateException exception = new IllegalStateException(
+                    "SerialCameraComponent: A continuous capture is already running");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        captureSession = session;
+        Thread thread = new Thread(() -> runContinuousCapture(session, intervalMillis, sink), "SerialCameraCapture");
+        thread.setDaemon(true);
+        session.thread = thread;
+        thread.start();
+        ComponentLogger.logInfo("SerialCameraComponent: Continuous capture started");
+    }
+
+    /**
+     * Loop of the capture thread. Takes a snapshot at most every interval and waits for the sink before the next one,
+     * so a slow consumer lowers the frame rate. A capture that fell behind does not try to catch up.
+     *
+     * @param session        The session of the capture.
+     * @param intervalMillis Minimum time between two snapshots.
+     * @param sink           Receives the frames.
+     */
+    private void runContinuousCapture(CaptureSession session, long intervalMillis, FrameSink sink) {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long nextSnapshot = System.nanoTime();
+
+        try {
+            while (session.isRunning()) {
+                long wait = nextSnapshot - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(Math.min(wait, CAPTURE_POLL_NANOS));
+                    continue;
+                }
+
+                byte[] frame = getImageAsJpgBytes();
+                nextSnapshot = Math.max(nextSnapshot + intervalNanos, System.nanoTime());
+                if (!sink.deliver(frame)) break;
+                session.frameCount.incrementAndGet();
+            }
+        } catch (Exception ex) {
+            session.error = ex;
+            ComponentLogger.logError("SerialCameraComponent: Continuous capture stopped because of an error "
+                    + ex.getMessage());
+        } finally {
+            session.finish();
+            ComponentLogger.logInfo("SerialCameraComponent: Continuous capture stopped after "
+                    + session.getFrameCount() + " frames");
+        }
+    }
+
+    /**
+     * Reads the 6 bytes of a command response from the camera.
+     *
+     * @param step The protocol step the response belongs to.
+     * @return The response.
+     * @throws IOException          Thrown if the camera does not answer within the timeout of the step
+     * @throws InterruptedException
+     */
+    private byte[] readResponse(Step step) throws IOException, InterruptedException {
+        byte[] bytes = new byte[RESPONSE_SIZE];
+        readFully(bytes, 0, RESPONSE_SIZE, step);
+        return bytes;
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the serial bus within the timeout of the protocol step.
+     *
+     * @param buffer Buffer the bytes are written to.
+     * @param offset Position of the first byte in the buffer.
+     * @param length Number of bytes to read.
+     * @param step   The protocol step the bytes belong to.
+     * @return Sum of the bytes read, used for the check sum of the packages.
+     * @throws IOException          Thrown if the bytes do not arrive in time
+     * @throws InterruptedException
+     */
+    private byte readFully(byte[] buffer, int offset, int length, Step step) throws IOException, InterruptedException {
+        return readFully(buffer, offset, length, step, getTimeout(step));
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the serial bus. Available bytes are read in one go. If not enough
+     * bytes are available, the thread parks for the time the missing bytes need at the current baud rate instead of
+     * polling byte by byte.
+     *
+     * @param buffer        Buffer the bytes are written to.
+     * @param offset        Position of the first byte in the buffer.
+     * @param length        Number of bytes to read.
+     * @param step          The protocol step the bytes belong to.
+     * @param timeoutMillis Time the camera may take on top of the transfer time of the bytes.
+     * @return Sum of the bytes read, used for the check sum of the packages.
+     * @throws SerialCameraTimeoutException Thrown if the bytes do not arrive in time
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private byte readFully(byte[] buffer, int offset, int length, Step step, long timeoutMillis)
+            throws IOException, InterruptedException {
+        long byteNanos = getByteNanos();
+        long deadline = System.nanoTime() + length * byteNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int received = 0;
+        byte sum = 0;
+
+        while (received < length) {
+            int available = serial.available();
+            if (available > 0) {
+                byte[] bytes = serial.read(Math.min(available, length - received));
+                for (int i = 0; i < bytes.length; i++) {
+                    buffer[offset + received + i] = bytes[i];
+                    sum += bytes[i];
+                }
+                received += bytes.length;
+                continue;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                SerialCameraTimeoutException exception = new SerialCameraTimeoutException(step, timeoutMillis,
+                        received, length);
+                ComponentLogger.logError(exception.getMessage());
+                throw exception;
+            }
+            LockSupport.parkNanos(Math.min((length - received) * byteNanos, remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException("SerialCameraComponent: Interrupted while reading from the camera");
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Waits until the camera starts to answer.
+     *
+     * @param nanos Maximum time to wait.
+     * @return True if at least one byte arrived.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private boolean waitForInput(long nanos) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        while (serial.available() == 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(getByteNanos(), remaining));
+            if (Thread.interrupted()) {
+                throw new InterruptedException("SerialCameraComponent: Interrupted while waiting for the camera");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Transfer time of one byte at the current baud rate: start bit, 8 data bits and stop bit.
+     */
+    private long getByteNanos() {
+        return TimeUnit.SECONDS.toNanos(10) / baudRate;
+    }
+
+    /**
+     * Discards the rest of a corrupt package. Reads and disposes bytes until the camera stopped sending for the time
+     * of 16 bytes, so the remaining bytes do not end up in the next package.
+     *
+     * @throws IOException
+     */
+    private void discardPendingInput() throws IOException {
+        long idleNanos = getByteNanos() * 16 + TimeUnit.MILLISECONDS.toNanos(1);
+        do {
+            clearDataFromSerialInput();
+            LockSupport.parkNanos(idleNanos);
+        } while (serial.available() > 0);
+    }
+
     /**
      * Reads all remaining bytes on the serial bus and disposes them.
      *
@@ -417,4 +1192,81 @@ public class SerialCameraComponent {
             serial.read(byteCount);
         }
     }
+
+    /**
+     * Receives the data of the verified packages of a picture.
+     */
+    private interface PayloadConsumer {
+        void accept(byte[] data, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Receives the frames of a continuous capture. Returns false if the capture should stop.
+     */
+    private interface FrameSink {
+        boolean deliver(byte[] frame) throws InterruptedException;
+    }
+
+    /**
+     * Handle of a continuous capture. It allows to take the frames, to stop the capture and to wait until it is
+     * finished.
+     */
+    public static class CaptureSession {
+        private final BlockingQueue<byte[]> frames;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicLong frameCount = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile Exception error;
+        private Thread thread;
+
+        private CaptureSession(BlockingQueue<byte[]> frames) {
+            this.frames = frames;
+        }
+
+        /**
+         * @return The queue the frames are put into, null if the frames are delivered to a callback.
+         */
+        public BlockingQueue<byte[]> getFrames() {
+            return frames;
+        }
+
+        /**
+         * Stops the capture after the current frame and waits until the capture thread finished. Called from a
+         * frame callback it only stops the capture.
+         *
+         * @throws InterruptedException Thrown if the waiting thread is interrupted
+         */
+        public void stop() throws InterruptedException {
+            running = false;
+            if (Thread.currentThread() != thread) {
+                finished.await();
+            }
+        }
+
+        /**
+         * @return true if the capture is still running
+         */
+        public boolean isRunning() {
+            return running && finished.getCount() > 0;
+        }
+
+        /**
+         * @return Number of frames delivered so far.
+         */
+        public long getFrameCount() {
+            return frameCount.get();
+        }
+
+        /**
+         * @return The error that stopped the capture, null if there was none.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        private void finish() {
+            running = false;
+            finished.countDown();
+        }
+    }
 }
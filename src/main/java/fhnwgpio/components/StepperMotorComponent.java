@@ -1,21 +1,34 @@
 package fhnwgpio.components;
 
 import com.pi4j.io.gpio.GpioPinDigitalOutput;
-import com.pi4j.io.gpio.PinState;
+import fhnwgpio.components.base.GpioStepperMotorOutput;
+import fhnwgpio.components.base.StepperMotorOutput;
 import fhnwgpio.components.helper.ComponentLogger;
+import fhnwgpio.components.helper.StepScheduler;
+import fhnwgpio.components.helper.StepperMotionProfile;
 import fhnwgpio.components.helper.StepperMotorMode;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * FHNW implementation for controlling stepper motors. The implementation allows to control 1/64 gear reduced
- * stepper motors by stepping them in half step, single step and double step mode.
+ * stepper motors by stepping them in half step, single step and double step mode. The steps are either done with a
+ * constant step delay or, if a motion profile is set, with acceleration and deceleration.
+ * <p>
+ * stepForwards and stepBackwards block the caller for the whole move. moveTo and moveBy run the move on a separate
+ * thread and can change the target of a move in flight. The motor keeps track of its absolute position in steps.
  */
 public class StepperMotorComponent {
-    private GpioPinDigitalOutput digitalOut1;
-    private GpioPinDigitalOutput digitalOut2;
-    private GpioPinDigitalOutput digitalOut3;
-    private GpioPinDigitalOutput digitalOut4;
-    private int stepDelay;
-    private StepperMotorMode mode;
+    private final StepperMotorOutput output;
+    private volatile long stepDelayMicros;
+    private volatile StepperMotorMode mode;
+    private volatile StepperMotionProfile motionProfile;
+    private final StepScheduler scheduler = new StepScheduler();
 
     // tag::StepperMotorComponentHalfStepping[]
     private final byte[] half_step = new byte[] { 0b1000, 0b1100, 0b0100, 0b0110, 0b0010, 0b0011, 0b0001, 0b1001 };
@@ -26,14 +39,21 @@ public class StepperMotorComponent {
     // tag::StepperMotorComponentDoubleStepping[]
     private final byte[] double_step = new byte[] { 0b1100, 0b0110, 0b0011, 0b1001 };
     // end::StepperMotorComponentDoubleStepping[]
-    // tag::StepperMotorComponentRevHalfStepping[]
-    private final byte[] rev_half_step = new byte[] { 0b1001, 0b0001, 0b0011, 0b0010, 0b0110, 0b0100, 0b1100, 0b1000 };
-    // end::StepperMotorComponentRevHalfStepping[]
-    private final byte[] rev_single_step = new byte[] { 0b0001, 0b0010, 0b0100, 0b1000 };
-    private final byte[] rev_double_step = new byte[] { 0b1001, 0b0011, 0b0110, 0b1100 };
 
-    private int currentPosition = 0;
-    private boolean lastDirectionForward = true;
+    // absolute position in steps, the element of the sequence is derived from it in both directions
+    private final AtomicLong position = new AtomicLong();
+    // held by the thread that drives the coils, so blocking and asynchronous moves never step at the same time
+    private final ReentrantLock motionLock = new ReentrantLock();
+    // controllers that hold several motors lock them in this order, so they can't deadlock each other
+    private static final AtomicLong motionOrderCounter = new AtomicLong();
+    private final long motionOrder = motionOrderCounter.getAndIncrement();
+
+    // state of the asynchronous moves, guarded by moveMonitor
+    private final Object moveMonitor = new Object();
+    private Thread mover;
+    private long targetPosition;
+    private boolean stopRequested = false;
+    private final List<CompletableFuture<Long>> pendingMoves = new ArrayList<>();
 
     /**
      * Constructor which allows to specify all the different Parameters.
@@ -47,16 +67,30 @@ public class StepperMotorComponent {
      */
     public StepperMotorComponent(GpioPinDigitalOutput digitalOut1, GpioPinDigitalOutput digitalOut2,
             GpioPinDigitalOutput digitalOut3, GpioPinDigitalOutput digitalOut4, int stepDelay, StepperMotorMode mode) {
-        this.digitalOut1 = digitalOut1;
-        this.digitalOut2 = digitalOut2;
-        this.digitalOut3 = digitalOut3;
-        this.digitalOut4 = digitalOut4;
+        this(new GpioStepperMotorOutput(digitalOut1, digitalOut2, digitalOut3, digitalOut4), stepDelay, mode);
+    }
+
+    /**
+     * Constructor for stepper motors that are not connected to GPIO pins of the Raspberry Pi, e.g. the
+     * RecordingStepperMotorOutput.
+     *
+     * @param output    The coil outputs of the motor.
+     * @param stepDelay The delay between the steps. Must be at least 2 ms.
+     * @param mode      The desired stepper motor mode.
+     */
+    public StepperMotorComponent(StepperMotorOutput output, int stepDelay, StepperMotorMode mode) {
+        if (output == null) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "StepperMotorComponent: output must not be null");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        this.output = output;
         setStepDelay(stepDelay);
         setMode(mode);
-        ComponentLogger.logInfo(
-                "StepperMotorComponent: StepperMotor created for GPIO pins " + digitalOut1.getPin().getAddress() + ", "
-                        + digitalOut2.getPin().getAddress() + ", " + digitalOut3.getPin().getAddress() + " and "
-                        + digitalOut4.getPin().getAddress() + " with a stepDelay of " + stepDelay + " milliseconds");
+        ComponentLogger.logInfo("StepperMotorComponent: StepperMotor created for " + output + " with a stepDelay of "
+                + stepDelay + " milliseconds");
     }
 
     /**
@@ -115,17 +149,54 @@ public class StepperMotorComponent {
             throw exception;
         }
 
-        this.stepDelay = stepDelay;
-        ComponentLogger.logInfo("StepperMotorComponent: stepDelay set to " + this.stepDelay + " milliseconds.");
+        this.stepDelayMicros = TimeUnit.MILLISECONDS.toMicros(stepDelay);
+        ComponentLogger.logInfo("StepperMotorComponent: stepDelay set to " + stepDelay + " milliseconds.");
     }
 
     /**
      * Getter of the step delay value.
      *
-     * @return The current step delay value.
+     * @return The current step delay value in whole milliseconds.
      */
     public int getStepDelay() {
-        return stepDelay;
+        return (int) TimeUnit.MICROSECONDS.toMillis(stepDelayMicros);
+    }
+
+    /**
+     * Setter of the step delay value with microsecond resolution. Unlike setStepDelay this allows delays below 2 ms,
+     * which most motors only follow with a motion profile or without load.
+     *
+     * @param stepDelayMicros The step delay in microseconds to be set.
+     * @throws IllegalArgumentException Exception is thrown when a value smaller than 1 is provided.
+     */
+    public void setStepDelayMicros(long stepDelayMicros) throws IllegalArgumentException {
+        if (stepDelayMicros < 1) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "StepperMotorComponent: stepDelayMicros must be at least 1 microsecond");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        this.stepDelayMicros = stepDelayMicros;
+        ComponentLogger.logInfo("StepperMotorComponent: stepDelay set to " + stepDelayMicros + " microseconds.");
+    }
+
+    /**
+     * Getter of the step delay value in microseconds.
+     *
+     * @return The current step delay value in microseconds.
+     */
+    public long getStepDelayMicros() {
+        return stepDelayMicros;
+    }
+
+    /**
+     * Getter of the step scheduler, which times the steps and records their timing jitter.
+     *
+     * @return The step scheduler of the motor.
+     */
+    public StepScheduler getStepScheduler() {
+        return scheduler;
     }
 
     /**
@@ -147,11 +218,32 @@ public class StepperMotorComponent {
         return mode;
     }
 
+    /**
+     * Setter of the motion profile. With a motion profile the motor accelerates at the start of every move and
+     * decelerates at its end, which allows higher speeds than the constant step delay without missing steps.
+     *
+     * @param motionProfile The motion profile to be used or null to step with the constant step delay.
+     */
+    public void setMotionProfile(StepperMotionProfile motionProfile) {
+        this.motionProfile = motionProfile;
+        ComponentLogger.logInfo("StepperMotorComponent: Set motion profile to "
+                + (motionProfile == null ? "constant step delay" : motionProfile.toString()));
+    }
+
+    /**
+     * Getter of the motion profile.
+     *
+     * @return The current motion profile or null if the motor steps with the constant step delay.
+     */
+    public StepperMotionProfile getMotionProfile() {
+        return motionProfile;
+    }
+
     /**
      * Step the stepper motor forwards using the currently set mode for a specific amount of steps.
      *
      * @param steps Number of steps the motor should move.
-     * @throws InterruptedException Exception might be thrown because of Thread.sleep().
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for a step.
      */
     public void stepForwards(int steps) throws InterruptedException {
         step(steps, true);
@@ -162,7 +254,7 @@ public class StepperMotorComponent {
      * Step the stepper motor backwards using the currently set mode for a specific amount of steps.
      *
      * @param steps Number of steps the motor should move.
-     * @throws InterruptedException Exception might be thrown because of Thread.sleep().
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for a step.
      */
     public void stepBackwards(int steps) throws InterruptedException {
         step(steps, false);
@@ -170,110 +262,281 @@ public class StepperMotorComponent {
     }
 
     /**
-     * This method controls the motor through the GPIO pins.
+     * This method controls the motor through the GPIO pins. The times of all steps are planned before the first step,
+     * every step then waits for its absolute deadline so delays do not add up over the move. A running asynchronous
+     * move is finished first.
      *
      * @param steps        Number of steps the motor should move.
      * @param stepForwards The moving direction.
-     * @throws InterruptedException Exception might be thrown because of Thread.sleep().
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for a step.
      */
     // tag::StepperMotorComponentStep[]
     private void step(int steps, boolean stepForwards) throws InterruptedException {
-        if (stepForwards != lastDirectionForward) {
-            shiftCurrentPosition();
-            lastDirectionForward = stepForwards;
+        StepperMotionProfile profile = motionProfile;
+        long[] stepTimes = profile == null ? null : profile.planStepTimes(steps);
+        long stepDelayNanos = TimeUnit.MICROSECONDS.toNanos(stepDelayMicros);
+        int direction = stepForwards ? 1 : -1;
+
+        motionLock.lockInterruptibly();
+        try {
+            scheduler.start();
+            for (int i = 0; i < steps; i++) {
+                output.write(getElement(position.addAndGet(direction)));
+                scheduler.awaitDeadline(stepTimes == null ? (i + 1) * stepDelayNanos : stepTimes[i + 1]);
+            }
+        } finally {
+            motionLock.unlock();
+        }
+    }
+    // end::StepperMotorComponentStep[]
+
+    /**
+     * Moves the motor to an absolute position without blocking the caller. If the motor is already moving, the move
+     * is retargeted: the motor keeps its speed, decelerates early enough for the new target and reverses if needed.
+     * With a motion profile the motor accelerates and decelerates with the acceleration of the profile, otherwise it
+     * steps with the constant step delay.
+     *
+     * @param targetPosition The absolute position in steps.
+     * @return Future that completes with the position of the motor once it stands still, at the latest target or
+     * where it was stopped.
+     */
+    public CompletableFuture<Long> moveTo(long targetPosition) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (moveMonitor) {
+            this.targetPosition = targetPosition;
+            stopRequested = false;
+            pendingMoves.add(future);
+            if (mover == null) {
+                mover = new Thread(this::runMover, "StepperMotor");
+                mover.setDaemon(true);
+                mover.start();
+            }
         }
+        if (ComponentLogger.isDebugEnabled()) {
+            ComponentLogger.logDebug("StepperMotorComponent: Move to position " + targetPosition);
+        }
+        return future;
+    }
 
-        for (int i = 0; i < steps; i++) {
-            byte element = getElement(i, stepForwards);
-            digitalOut1.setState((element >> 0 & 0b0001) == 1 ? PinState.HIGH : PinState.LOW);
-            digitalOut2.setState((element >> 1 & 0b0001) == 1 ? PinState.HIGH : PinState.LOW);
-            digitalOut3.setState((element >> 2 & 0b0001) == 1 ? PinState.HIGH : PinState.LOW);
-            digitalOut4.setState((element >> 3 & 0b0001) == 1 ? PinState.HIGH : PinState.LOW);
-            Thread.sleep(stepDelay);
+    /**
+     * Moves the motor by a number of steps without blocking the caller. The steps are relative to the target of the
+     * running move or to the current position if the motor stands still.
+     *
+     * @param steps Number of steps the motor should move, negative values move backwards.
+     * @return Future that completes with the position of the motor once it stands still.
+     */
+    public CompletableFuture<Long> moveBy(long steps) {
+        synchronized (moveMonitor) {
+            return moveTo(getTargetPosition() + steps);
         }
+    }
 
-        setCurrentPosition(steps);
+    /**
+     * Getter of the absolute position of the motor.
+     *
+     * @return The number of steps forwards minus the number of steps backwards since the motor was created.
+     */
+    public long getPosition() {
+        return position.get();
+    }
+
+    /**
+     * Getter of the target of the running move.
+     *
+     * @return The target of the running move or the current position if the motor stands still.
+     */
+    public long getTargetPosition() {
+        synchronized (moveMonitor) {
+            return mover == null ? position.get() : targetPosition;
+        }
+    }
+
+    /**
+     * Checks if an asynchronous move is running.
+     *
+     * @return true if the motor is moving to a target set by moveTo or moveBy.
+     */
+    public boolean isMoving() {
+        synchronized (moveMonitor) {
+            return mover != null;
+        }
     }
-    // end::StepperMotorComponentStep[]
 
     /**
-     * This methods stops the motor and clears the magnetic field.
+     * This methods stops the motor and clears the magnetic field. A running asynchronous move decelerates to
+     * standstill first, its future completes with the position where the motor stopped.
      */
     public void stop() {
-        digitalOut1.low();
-        digitalOut2.low();
-        digitalOut3.low();
-        digitalOut4.low();
+        synchronized (moveMonitor) {
+            if (mover != null) {
+                stopRequested = true;
+                ComponentLogger.logInfo("StepperMotorComponent: Motor stopping");
+                return;
+            }
+        }
+        output.write(0);
         ComponentLogger.logInfo("StepperMotorComponent: Motor stopped");
     }
 
     /**
-     * Returns the element of the array at the current position from the actually set stepper motor mode.
-     *
-     * @param stepNumber The number of the current step.
-     * @param forwards   The moving direction.
-     * @return The correlating element of the array according to the stepper motor mode.
+     * Runs the asynchronous moves until the motor stands still at its target or was stopped.
      */
-    // tag::StepperMotorComponentGetElement[]
-    private byte getElement(int stepNumber, boolean forwards) {
-        int elementPosition = stepNumber + currentPosition;
-        switch (mode) {
-        case HALF_STEP:
-            return forwards ?
-                    half_step[Math.floorMod(elementPosition, half_step.length)] :
-                    rev_half_step[Math.floorMod(elementPosition, rev_half_step.length)];
-        case SINGLE_STEP:
-            return forwards ?
-                    single_step[Math.floorMod(elementPosition, single_step.length)] :
-                    rev_single_step[Math.floorMod(elementPosition, rev_single_step.length)];
-        case DOUBLE_STEP:
-            return forwards ?
-                    double_step[Math.floorMod(elementPosition, double_step.length)] :
-                    rev_double_step[Math.floorMod(elementPosition, rev_double_step.length)];
-        default:
-            IllegalArgumentException exception = new IllegalArgumentException("StepperMotorMode is invalid.");
-            ComponentLogger.logError(exception.getMessage());
-            throw exception;
+    private void runMover() {
+        List<CompletableFuture<Long>> finishedMoves = new ArrayList<>();
+        Throwable error = null;
+        motionLock.lock();
+        try {
+            runMove(finishedMoves);
+        } catch (InterruptedException | RuntimeException e) {
+            error = e;
+            ComponentLogger.logError("StepperMotorComponent: Move failed: " + e);
+            synchronized (moveMonitor) {
+                finishedMoves.addAll(pendingMoves);
+                pendingMoves.clear();
+                mover = null;
+            }
+        } finally {
+            motionLock.unlock();
+        }
+
+        for (CompletableFuture<Long> move : finishedMoves) {
+            if (error == null) {
+                move.complete(position.get());
+            } else {
+                move.completeExceptionally(error);
+            }
         }
     }
-    // end::StepperMotorComponentGetElement[]
 
     /**
-     * Calculates the current position in the array of the current stepper motor mode.
+     * Steps towards the target with a speed that is planned step by step, so the target can change at any time. The
+     * speed follows v^2 = v0^2 + 2a per step while accelerating and v^2 = v0^2 - 2a while decelerating, the motor
+     * decelerates as soon as the remaining steps are needed to stop.
      *
-     * @param steps The number of steps made.
+     * @param finishedMoves Receives the futures of the moves that are completed when the motor stands still.
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for a step.
      */
-    private void setCurrentPosition(int steps) {
-        switch (mode) {
-        case HALF_STEP:
-            currentPosition = steps % half_step.length;
-            break;
-        case SINGLE_STEP:
-            currentPosition = steps % single_step.length;
-            break;
-        case DOUBLE_STEP:
-            currentPosition = steps % double_step.length;
-            break;
+    // tag::StepperMotorComponentMove[]
+    private void runMove(List<CompletableFuture<Long>> finishedMoves) throws InterruptedException {
+        double speed = 0;
+        int direction = 0;
+        long deadline = 0;
+
+        while (true) {
+            long target;
+            boolean stopping;
+            synchronized (moveMonitor) {
+                target = targetPosition;
+                stopping = stopRequested;
+            }
+
+            StepperMotionProfile profile = motionProfile;
+            double maxSpeed = profile == null ? 1e6 / stepDelayMicros : profile.getMaxSpeed();
+            double acceleration = profile == null ? Double.POSITIVE_INFINITY : profile.getAcceleration();
+            double startSpeed = Math.min(maxSpeed, Math.sqrt(2 * acceleration));
+            long distance = target - position.get();
+
+            if (speed == 0) {
+                if (distance == 0 || stopping) {
+                    synchronized (moveMonitor) {
+                        // the target may have changed since it was read
+                        if (targetPosition == position.get() || stopRequested) {
+                            if (stopRequested) {
+                                output.write(0);
+                                ComponentLogger.logInfo("StepperMotorComponent: Motor stopped");
+                            }
+                            finishedMoves.addAll(pendingMoves);
+                            pendingMoves.clear();
+                            stopRequested = false;
+                            mover = null;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                direction = Long.signum(distance);
+                speed = startSpeed;
+                scheduler.start();
+                deadline = 0;
+            } else if (stopping || Long.signum(distance) != direction
+                    || Math.abs(distance) <= speed * speed / (2 * acceleration)) {
+                double squaredSpeed = speed * speed - 2 * acceleration;
+                if (squaredSpeed >= startSpeed * startSpeed) {
+                    speed = Math.sqrt(squaredSpeed);
+                } else if (stopping || Long.signum(distance) != direction) {
+                    speed = 0;
+                    continue;
+                } else {
+                    speed = startSpeed;
+                }
+            } else {
+                speed = Math.min(maxSpeed, Math.sqrt(speed * speed + 2 * acceleration));
+            }
+
+            output.write(getElement(position.addAndGet(direction)));
+            deadline += (long) (TimeUnit.SECONDS.toNanos(1) / speed);
+            scheduler.awaitDeadline(deadline);
         }
     }
+    // end::StepperMotorComponentMove[]
+
+    /**
+     * Reserves the motor for a caller that steps it with stepOnce, e.g. the MultiAxisStepperController. Blocking and
+     * asynchronous moves of the motor wait until it is released again.
+     *
+     * @throws InterruptedException Exception is thrown if the thread is interrupted while waiting for the motor.
+     */
+    void lockMotion() throws InterruptedException {
+        motionLock.lockInterruptibly();
+    }
+
+    /**
+     * Releases the motor reserved with lockMotion.
+     */
+    void unlockMotion() {
+        motionLock.unlock();
+    }
+
+    /**
+     * Callers that reserve several motors with lockMotion have to lock them in ascending order of this number.
+     *
+     * @return Number that is unique for every motor and does not change.
+     */
+    long getMotionOrder() {
+        return motionOrder;
+    }
 
     /**
-     * This method needs to be called whenever the direction of the motor is changed since the position must be
-     * recalculated on direction change.
+     * Does a single step without waiting. The caller has to hold the motor with lockMotion and is responsible for the
+     * timing of the steps.
+     *
+     * @param direction 1 for a step forwards, -1 for a step backwards.
      */
-    // tag::StepperMotorComponentShiftPosition[]
-    private void shiftCurrentPosition() {
+    void stepOnce(int direction) {
+        output.write(getElement(position.addAndGet(direction)));
+    }
+
+    /**
+     * Returns the element of the array at a position from the actually set stepper motor mode. Stepping backwards
+     * runs through the same array in reverse order, so the motor never skips a step when it changes its direction.
+     *
+     * @param position The absolute position of the motor.
+     * @return The correlating element of the array according to the stepper motor mode.
+     */
+    // tag::StepperMotorComponentGetElement[]
+    private byte getElement(long position) {
         switch (mode) {
         case HALF_STEP:
-            currentPosition = half_step.length - 1 - currentPosition;
-            break;
+            return half_step[(int) Math.floorMod(position, (long) half_step.length)];
         case SINGLE_STEP:
-            currentPosition = single_step.length - 1 - currentPosition;
-            break;
+            return single_step[(int) Math.floorMod(position, (long) single_step.length)];
         case DOUBLE_STEP:
-            currentPosition = double_step.length - 1 - currentPosition;
-            break;
+            return double_step[(int) Math.floorMod(position, (long) double_step.length)];
+        default:
+            IllegalArgumentException exception = new IllegalArgumentException("StepperMotorMode is invalid.");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
         }
     }
-    // end::StepperMotorComponentShiftPosition[]
+    // end::StepperMotorComponentGetElement[]
 }
@@ -0,0 +1,46 @@
+package fhnwgpio.components.base;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.PinState;
+
+/**
+ * StepperMotorOutput on four GPIO pins of the Raspberry Pi using pi4j. Only the pins whose coil changes are written,
+ * which is one or two pins per step instead of four. The pins are written directly through their GPIO provider, so
+ * a step does not go through the state handling of the pin objects.
+ */
+public class GpioStepperMotorOutput implements StepperMotorOutput {
+    private final GpioPinDigitalOutput[] pins;
+    private int coils = -1;
+
+    /**
+     * @param digitalOut1 The first digital output pin
+     * @param digitalOut2 The second digital output pin
+     * @param digitalOut3 The third digital output pin
+     * @param digitalOut4 The fourth digital output pin
+     */
+    public GpioStepperMotorOutput(GpioPinDigitalOutput digitalOut1, GpioPinDigitalOutput digitalOut2,
+            GpioPinDigitalOutput digitalOut3, GpioPinDigitalOutput digitalOut4) {
+        pins = new GpioPinDigitalOutput[] { digitalOut1, digitalOut2, digitalOut3, digitalOut4 };
+    }
+
+    // tag::GpioStepperMotorOutputWrite[]
+    @Override
+    public synchronized void write(int coils) {
+        // the pin states are unknown until the first write, so all pins are written once
+        int changed = this.coils < 0 ? 0b1111 : (coils ^ this.coils) & 0b1111;
+        for (int i = 0; i < pins.length; i++) {
+            if ((changed >> i & 0b0001) == 1) {
+                PinState state = (coils >> i & 0b0001) == 1 ? PinState.HIGH : PinState.LOW;
+                pins[i].getProvider().setState(pins[i].getPin(), state);
+            }
+        }
+        this.coils = coils & 0b1111;
+    }
+    // end::GpioStepperMotorOutputWrite[]
+
+    @Override
+    public String toString() {
+        return "GPIO pins " + pins[0].getPin().getAddress() + ", " + pins[1].getPin().getAddress() + ", "
+                + pins[2].getPin().getAddress() + " and " + pins[3].getPin().getAddress();
+    }
+}
@@ -1,23 +1,50 @@
 package fhnwgpio.components.base;
 
-import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 import com.pi4j.util.Console;
+import fhnwgpio.components.helper.ComponentLogger;
 import fhnwgpio.grove.GroveAdapter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Abstract class for I2C devices
  * Provides methods that all I2C devices might need
+ * <p>
+ * Devices created with a bus number share the bus handle through the I2CBusRegistry. All accesses to the device are
+ * serialized with the fair lock of the bus, so components on the same bus never interleave their transactions.
+ * Call close() to release the bus when the component is not used anymore.
+ * <p>
+ * Failed transfers are repeated according to the retry policy. The methods ending with "Checked" throw an
+ * I2CException when all attempts failed, the other methods report the error to the console and return 0.
  */
-public abstract class I2CBase {
+public abstract class I2CBase implements AutoCloseable {
     private I2CDevice i2CDevice;
     private Console console;
+    private I2CBusRegistry.SharedBus sharedBus;
+    private ReentrantLock busLock;
+    private byte[] scratchBuffer = new byte[0];
+    private final Object scratchLock = new Object();
+    private I2CRetryPolicy retryPolicy = I2CRetryPolicy.DEFAULT;
+    private volatile int busClockHz = I2CTransaction.STANDARD_MODE_CLOCK_HZ;
+    private volatile long byteTransferNanos = I2CTransaction.BYTE_TRANSFER_NANOS;
+    private final AtomicLong[] failureCounts = new AtomicLong[I2CErrorType.values().length];
+    private final AtomicLong retryCount = new AtomicLong();
+
+    {
+        for (int i = 0; i < failureCounts.length; i++) {
+            failureCounts[i] = new AtomicLong();
+        }
+    }
 
     public I2CBase(I2CDevice device) {
         i2CDevice = device;
+        busLock = new ReentrantLock(true);
     }
 
     public I2CBase(int address, int busNumber) throws IOException, I2CFactory.UnsupportedBusNumberException {
@@ -30,16 +57,37 @@ public abstract class I2CBase {
 
     public I2CBase(int address, int busNumber, Console console)
             throws IOException, I2CFactory.UnsupportedBusNumberException {
-        I2CBus bus = I2CFactory.getInstance(busNumber);
-        this.i2CDevice = bus.getDevice(address);
+        I2CBusRegistry.SharedBus shared = I2CBusRegistry.acquire(busNumber);
+        try {
+            this.i2CDevice = shared.getBus().getDevice(address);
+        } catch (IOException ex) {
+            I2CBusRegistry.release(shared);
+            throw ex;
+        }
+        this.sharedBus = shared;
+        this.busLock = shared.getLock();
         this.setConsole(console);
     }
 
     public I2CBase(int address, GroveAdapter adapter, Console console)
             throws IOException, I2CFactory.UnsupportedBusNumberException {
-        I2CBus bus = I2CFactory.getInstance(adapter.getAdapter().getI2cBus().getBusNumber());
-        this.i2CDevice = bus.getDevice(address);
-        this.setConsole(console);
+        this(address, adapter.getAdapter().getI2cBus().getBusNumber(), console);
+    }
+
+    /**
+     * Releases the shared bus. The bus handle is closed when no other component uses it anymore.
+     */
+    @Override
+    public void close() {
+        if (sharedBus == null) {
+            return;
+        }
+        try {
+            I2CBusRegistry.release(sharedBus);
+        } catch (IOException ex) {
+            reportError(ex);
+        }
+        sharedBus = null;
     }
 
     /**
@@ -49,10 +97,87 @@ public abstract class I2CBase {
      */
     protected void writeCmd(byte cmd) {
         try {
-            i2CDevice.write(cmd);
+            writeChecked(cmd);
             Thread.sleep(0, 100000);
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
+        } catch (I2CException ex) {
+            reportError(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a single byte
+     *
+     * @param value byte to write
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public void writeChecked(byte value) throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    i2CDevice.write(value);
+                    return;
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new transaction that collects writes and sends them in as few bursts as possible
+     *
+     * @return an empty transaction for this device
+     */
+    public I2CTransaction beginTransaction() {
+        return new I2CTransaction(this);
+    }
+
+    /**
+     * Locks the bus for a transaction that consists of multiple writes and pauses
+     */
+    void lockBus() {
+        busLock.lock();
+    }
+
+    /**
+     * Releases the bus after a transaction
+     */
+    void unlockBus() {
+        busLock.unlock();
+    }
+
+    /**
+     * Writes multiple bytes to the device in one bus transaction. A burst is never repeated, because a partly
+     * written burst (e.g. LCD nibbles) can not be replayed safely.
+     *
+     * @param buffer data to write
+     * @param offset position of the first byte in the buffer
+     * @param size   number of bytes to write
+     * @throws I2CException Thrown if the write failed
+     */
+    void writeBurst(byte[] buffer, int offset, int size) throws I2CException {
+        try {
+            i2CDevice.write(buffer, offset, size);
+        } catch (IOException ex) {
+            handleFailure(ex, 1, I2CRetryPolicy.NO_RETRY);
+        }
+    }
+
+    /**
+     * Keeps the bus idle for at least the given time
+     *
+     * @param nanos delay in nanoseconds
+     */
+    void pause(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -64,10 +189,35 @@ public abstract class I2CBase {
      */
     public void writeBlockData(byte cmd, byte[] data) {
         try {
-            i2CDevice.write(cmd, data);
+            writeBlockDataChecked(cmd, data);
             Thread.sleep(0, 100000);
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
+        } catch (I2CException ex) {
+            reportError(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a block of data to a data address
+     *
+     * @param cmd  data address
+     * @param data bytes to write
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public void writeBlockDataChecked(byte cmd, byte[] data) throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    i2CDevice.write(cmd, data);
+                    return;
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
         }
     }
 
@@ -76,13 +226,34 @@ public abstract class I2CBase {
      */
     public byte read() {
         try {
-            return (byte) i2CDevice.read();
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
+            return readChecked();
+        } catch (I2CException ex) {
+            reportError(ex);
         }
         return (byte) 0;
     }
 
+    /**
+     * Reads a single byte
+     *
+     * @return the byte read
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public byte readChecked() throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return (byte) i2CDevice.read();
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
+        }
+    }
+
     /**
      * Read a single byte
      *
@@ -91,24 +262,83 @@ public abstract class I2CBase {
      */
     public byte read(byte dataAddress) {
         try {
-            return (byte) i2CDevice.read(dataAddress);
-        } catch (Exception ex) {
-            getConsole().println();
+            return readChecked(dataAddress);
+        } catch (I2CException ex) {
+            reportError(ex);
         }
         return (byte) 0;
     }
 
+    /**
+     * Reads a single byte from a data address
+     *
+     * @param dataAddress address to read from
+     * @return the byte read
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public byte readChecked(byte dataAddress) throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return (byte) i2CDevice.read(dataAddress);
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
+        }
+    }
+
     /**
      * Reads a byte array
      */
     public byte[] readData(byte size) {
         byte[] bytes = new byte[size];
+        readData(bytes, 0, size);
+        return bytes;
+    }
+
+    /**
+     * Reads bytes into a buffer provided by the caller. Does not allocate any memory.
+     *
+     * @param buffer buffer to read into
+     * @param offset position in the buffer for the first byte
+     * @param length number of bytes to read
+     * @return number of bytes read, 0 if the read failed
+     */
+    public int readData(byte[] buffer, int offset, int length) {
         try {
-            i2CDevice.read(bytes, 0, size);
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
+            return readDataChecked(buffer, offset, length);
+        } catch (I2CException ex) {
+            reportError(ex);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads bytes into a buffer provided by the caller. Does not allocate any memory.
+     *
+     * @param buffer buffer to read into
+     * @param offset position in the buffer for the first byte
+     * @param length number of bytes to read
+     * @return number of bytes read
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public int readDataChecked(byte[] buffer, int offset, int length) throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return i2CDevice.read(buffer, offset, length);
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
         }
-        return bytes;
     }
 
     /**
@@ -120,12 +350,92 @@ public abstract class I2CBase {
      */
     public byte[] readData(byte dataAddress, byte size) {
         byte[] bytes = new byte[size];
+        readData(dataAddress, bytes, 0, size);
+        return bytes;
+    }
+
+    /**
+     * Reads bytes from a data address into a buffer provided by the caller. Does not allocate any memory.
+     *
+     * @param dataAddress address to read from
+     * @param buffer      buffer to read into
+     * @param offset      position in the buffer for the first byte
+     * @param length      number of bytes to read
+     * @return number of bytes read, 0 if the read failed
+     */
+    public int readData(byte dataAddress, byte[] buffer, int offset, int length) {
         try {
-            i2CDevice.read(dataAddress, bytes, 0, size);
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
+            return readDataChecked(dataAddress, buffer, offset, length);
+        } catch (I2CException ex) {
+            reportError(ex);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads bytes from a data address into a buffer provided by the caller. Does not allocate any memory.
+     *
+     * @param dataAddress address to read from
+     * @param buffer      buffer to read into
+     * @param offset      position in the buffer for the first byte
+     * @param length      number of bytes to read
+     * @return number of bytes read
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public int readDataChecked(byte dataAddress, byte[] buffer, int offset, int length) throws I2CException {
+        busLock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return i2CDevice.read(dataAddress, buffer, offset, length);
+                } catch (IOException ex) {
+                    handleFailure(ex, attempt, retryPolicy);
+                }
+            }
+        } finally {
+            busLock.unlock();
         }
-        return bytes;
+    }
+
+    /**
+     * Reads as many bytes as the buffer has remaining and advances its position by the number of bytes read.
+     * Heap buffers are filled directly, direct buffers go through a scratch array that is reused between calls.
+     *
+     * @param dataAddress address to read from
+     * @param buffer      buffer to read into
+     * @return number of bytes read, 0 if the read failed
+     */
+    public int readData(byte dataAddress, ByteBuffer buffer) {
+        try {
+            return readDataChecked(dataAddress, buffer);
+        } catch (I2CException ex) {
+            reportError(ex);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads as many bytes as the buffer has remaining and advances its position by the number of bytes read.
+     *
+     * @param dataAddress address to read from
+     * @param buffer      buffer to read into
+     * @return number of bytes read
+     * @throws I2CException Thrown if all attempts of the retry policy failed
+     */
+    public int readDataChecked(byte dataAddress, ByteBuffer buffer) throws I2CException {
+        int read;
+        if (buffer.hasArray()) {
+            read = readDataChecked(dataAddress, buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            buffer.position(buffer.position() + read);
+        } else {
+            synchronized (scratchLock) {
+                byte[] scratch = getScratchBuffer(buffer.remaining());
+                read = readDataChecked(dataAddress, scratch, 0, buffer.remaining());
+                buffer.put(scratch, 0, read);
+            }
+        }
+        return read;
     }
 
     /**
@@ -133,14 +443,151 @@ public abstract class I2CBase {
      */
     public byte[] readBlockData(byte size) {
         byte[] bytes = new byte[size];
-        try {
-            i2CDevice.read(bytes, 0, size);
-        } catch (Exception ex) {
-            getConsole().println(ex.getMessage());
-        }
+        readData(bytes, 0, size);
         return bytes;
     }
 
+    /**
+     * Reads a block of data into a buffer provided by the caller. Does not allocate any memory.
+     *
+     * @param buffer buffer to read into
+     * @param offset position in the buffer for the first byte
+     * @param length number of bytes to read
+     * @return number of bytes read, 0 if the read failed
+     */
+    public int readBlockData(byte[] buffer, int offset, int length) {
+        return readData(buffer, offset, length);
+    }
+
+    /**
+     * Returns a scratch array with at least the requested size. Must be called with the scratch lock held.
+     */
+    private byte[] getScratchBuffer(int size) {
+        if (scratchBuffer.length < size) {
+            scratchBuffer = new byte[size];
+        }
+        return scratchBuffer;
+    }
+
+    /**
+     * Counts a failed attempt and waits for the back-off of the policy. Throws an I2CException when no attempts are
+     * left. The bus is released during the back-off, so other devices on the bus are not held up by a failing one.
+     * Only inside a transaction, which must not be interrupted by other devices, the bus stays locked.
+     *
+     * @param ex      exception of the failed attempt
+     * @param attempt number of the failed attempt, starting with 1
+     * @param policy  retry policy to apply
+     * @throws I2CException Thrown if this was the last attempt or the thread was interrupted while waiting
+     */
+    private void handleFailure(IOException ex, int attempt, I2CRetryPolicy policy) throws I2CException {
+        I2CErrorType type = I2CErrorType.of(ex);
+        failureCounts[type.ordinal()].incrementAndGet();
+
+        if (attempt >= policy.getMaxAttempts() || Thread.currentThread().isInterrupted()) {
+            throw new I2CException(type, i2CDevice.getAddress(), attempt, ex);
+        }
+
+        retryCount.incrementAndGet();
+        long backoff = policy.getBackoffNanos(attempt);
+        if (backoff > 0) {
+            boolean release = busLock.getHoldCount() == 1;
+            if (release) {
+                busLock.unlock();
+            }
+            try {
+                LockSupport.parkNanos(backoff);
+            } finally {
+                if (release) {
+                    busLock.lock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports an error of a method that does not throw to the console, or to the log if no console is set.
+     *
+     * @param ex the error to report
+     */
+    void reportError(IOException ex) {
+        if (console != null) {
+            console.println(ex.getMessage());
+        } else {
+            ComponentLogger.logError(getClass().getSimpleName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Sets how often failed transfers are repeated.
+     *
+     * @param retryPolicy the retry policy to use
+     */
+    public void setRetryPolicy(I2CRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public I2CRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the clock of the bus. It has to match the clock of the Raspberry Pi (dtparam=i2c_arm_baudrate in
+     * /boot/config.txt), otherwise transactions skip delays that a byte on the faster bus does not cover.
+     *
+     * @param busClockHz clock of the bus in Hz, default is the standard mode clock of 100 kHz
+     */
+    public void setBusClockHz(int busClockHz) {
+        if (busClockHz <= 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "I2CBase: The bus clock must be greater than 0");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        this.busClockHz = busClockHz;
+        this.byteTransferNanos = I2CTransaction.BYTE_TRANSFER_CYCLES * 1_000_000_000L / busClockHz;
+    }
+
+    public int getBusClockHz() {
+        return busClockHz;
+    }
+
+    /**
+     * @return time needed to transfer one byte at the clock of the bus
+     */
+    long getByteTransferNanos() {
+        return byteTransferNanos;
+    }
+
+    /**
+     * Number of failed attempts of the given type since creation or the last reset. Every failed attempt is counted,
+     * also the ones that succeeded on a later retry.
+     *
+     * @param type the error type
+     * @return number of failed attempts
+     */
+    public long getFailureCount(I2CErrorType type) {
+        return failureCounts[type.ordinal()].get();
+    }
+
+    /**
+     * Number of repeated attempts since creation or the last reset.
+     *
+     * @return number of retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Resets all failure and retry counters to 0.
+     */
+    public void resetFailureCounters() {
+        for (AtomicLong count : failureCounts) {
+            count.set(0);
+        }
+        retryCount.set(0);
+    }
+
     public Console getConsole() {
         return console;
     }
@@ -0,0 +1,91 @@
+package fhnwgpio.components.base;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out one shared I2CBus per bus number to all I2C components. The registry counts the references to every bus
+ * and closes the bus handle as soon as the last component released it. Each bus comes with a fair lock which
+ * serializes the transactions of all components on that bus.
+ */
+public final class I2CBusRegistry {
+    private static final Map<Integer, SharedBus> buses = new HashMap<>();
+
+    private I2CBusRegistry() {
+    }
+
+    /**
+     * Returns the shared bus for the bus number and increases its reference count. The bus is opened on the first
+     * request.
+     *
+     * @param busNumber number of the I2C bus
+     * @return shared bus
+     * @throws IOException                              Exception that can be thrown when opening the bus
+     * @throws I2CFactory.UnsupportedBusNumberException Exception that can be thrown when opening the bus
+     */
+    static synchronized SharedBus acquire(int busNumber) throws IOException, I2CFactory.UnsupportedBusNumberException {
+        SharedBus shared = buses.get(busNumber);
+        if (shared == null) {
+            shared = new SharedBus(I2CFactory.getInstance(busNumber), busNumber);
+            buses.put(busNumber, shared);
+        }
+        shared.references++;
+        return shared;
+    }
+
+    /**
+     * Decreases the reference count of the shared bus and closes it when no component uses it anymore.
+     *
+     * @param shared shared bus to release
+     * @throws IOException Exception that can be thrown when closing the bus
+     */
+    static synchronized void release(SharedBus shared) throws IOException {
+        if (shared.references == 0) {
+            return;
+        }
+        shared.references--;
+        if (shared.references == 0) {
+            buses.remove(shared.busNumber);
+            shared.bus.close();
+        }
+    }
+
+    /**
+     * Number of components currently using the bus.
+     *
+     * @param busNumber number of the I2C bus
+     * @return reference count, 0 if the bus is not open
+     */
+    public static synchronized int getReferenceCount(int busNumber) {
+        SharedBus shared = buses.get(busNumber);
+        return shared == null ? 0 : shared.references;
+    }
+
+    /**
+     * An open I2C bus together with its reference count and transaction lock
+     */
+    static final class SharedBus {
+        private final I2CBus bus;
+        private final int busNumber;
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private int references = 0;
+
+        private SharedBus(I2CBus bus, int busNumber) {
+            this.bus = bus;
+            this.busNumber = busNumber;
+        }
+
+        I2CBus getBus() {
+            return bus;
+        }
+
+        ReentrantLock getLock() {
+            return lock;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fhnwgpio.components.base;
+
+/**
+ * Kinds of failures an I2C transfer can end with. The type is derived from the error code the linux i2c driver
+ * returned.
+ */
+public enum I2CErrorType {
+    /**
+     * The device did not acknowledge its address or a data byte (EREMOTEIO, ENXIO)
+     */
+    NACK,
+    /**
+     * The transfer did not complete in time, e.g. because another master or a device held the bus (ETIMEDOUT, EAGAIN)
+     */
+    TIMEOUT,
+    /**
+     * The adapter reported a bus error (EIO)
+     */
+    BUS_ERROR,
+    /**
+     * Any other failure
+     */
+    UNKNOWN;
+
+    /**
+     * Maps the exception thrown by pi4j to an error type. Pi4j only reports the error code in the message
+     * ("... Got '-20121'."), so the last negative number in the message is taken as error code. The native calls of
+     * pi4j encode the code as -10000 - errno if selecting the slave failed and as -20000 - errno if the transfer
+     * failed, so the errno is the code modulo 10000. This is only called after a transfer failed.
+     *
+     * @param ex exception thrown by the I2C device
+     * @return the matching error type
+     */
+    public static I2CErrorType of(Exception ex) {
+        switch (getErrorCode(ex.getMessage())) {
+        case 121:
+        case 6:
+            return NACK;
+        case 110:
+        case 11:
+            return TIMEOUT;
+        case 5:
+            return BUS_ERROR;
+        default:
+            return UNKNOWN;
+        }
+    }
+
+    private static int getErrorCode(String message) {
+        if (message == null) {
+            return 0;
+        }
+
+        int end = message.length() - 1;
+        while (end >= 0) {
+            while (end >= 0 && !Character.isDigit(message.charAt(end))) {
+                end--;
+            }
+            int start = end;
+            while (start >= 0 && Character.isDigit(message.charAt(start))) {
+                start--;
+            }
+            if (start >= 0 && message.charAt(start) == '-') {
+                // only the last four digits are kept, they hold the errno
+                int code = 0;
+                for (int i = start + 1; i <= end; i++) {
+                    code = (code * 10 + (message.charAt(i) - '0')) % 10_000;
+                }
+                return code;
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
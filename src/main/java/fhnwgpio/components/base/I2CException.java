@@ -0,0 +1,50 @@
+package fhnwgpio.components.base;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an I2C transfer failed after all attempts of the retry policy. The type tells a missing acknowledge
+ * apart from a timeout or a bus error. The message is only built when it is requested, so throwing and handling the
+ * exception does not format any strings.
+ */
+public class I2CException extends IOException {
+    private final I2CErrorType type;
+    private final int deviceAddress;
+    private final int attempts;
+
+    public I2CException(I2CErrorType type, int deviceAddress, int attempts, Throwable cause) {
+        super(null, cause);
+        this.type = type;
+        this.deviceAddress = deviceAddress;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return kind of the failure
+     */
+    public I2CErrorType getType() {
+        return type;
+    }
+
+    /**
+     * @return address of the device the transfer was addressed to
+     */
+    public int getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    /**
+     * @return number of attempts made before giving up
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String getMessage() {
+        String message = "I2C transfer to device 0x" + Integer.toHexString(deviceAddress) + " failed with " + type
+                + " after " + attempts + (attempts == 1 ? " attempt" : " attempts");
+        Throwable cause = getCause();
+        return cause == null ? message : message + ": " + cause.getMessage();
+    }
+}
@@ -0,0 +1,57 @@
+package fhnwgpio.components.base;
+
+/**
+ * Defines how often a failed I2C transfer is repeated and how long to wait in between. The wait time starts with the
+ * initial back-off and doubles with every attempt up to the maximum back-off.
+ */
+public class I2CRetryPolicy {
+    /**
+     * Gives up after the first failure
+     */
+    public static final I2CRetryPolicy NO_RETRY = new I2CRetryPolicy(1, 0, 0);
+
+    /**
+     * Three attempts, waiting 100 and 200 microseconds in between
+     */
+    public static final I2CRetryPolicy DEFAULT = new I2CRetryPolicy(3, 100_000, 1_000_000);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    /**
+     * @param maxAttempts         Number of attempts including the first one. Must be at least 1.
+     * @param initialBackoffNanos Wait time before the second attempt in nanoseconds.
+     * @param maxBackoffNanos     Upper limit for the wait time in nanoseconds.
+     * @throws IllegalArgumentException Thrown if maxAttempts is smaller than 1 or a wait time is negative.
+     */
+    public I2CRetryPolicy(int maxAttempts, long initialBackoffNanos, long maxBackoffNanos) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffNanos < 0 || maxBackoffNanos < initialBackoffNanos) {
+            throw new IllegalArgumentException("back-off must be positive and maxBackoffNanos not smaller than initialBackoffNanos");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Wait time after a failed attempt.
+     *
+     * @param attempt number of the failed attempt, starting with 1
+     * @return wait time in nanoseconds
+     */
+    public long getBackoffNanos(int attempt) {
+        long backoff = initialBackoffNanos;
+        for (int i = 1; i < attempt && backoff < maxBackoffNanos; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, maxBackoffNanos);
+    }
+}
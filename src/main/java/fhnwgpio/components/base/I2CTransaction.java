@@ -0,0 +1,162 @@
+package fhnwgpio.components.base;
+
+import java.util.Arrays;
+
+/**
+ * Collects a sequence of byte writes and timing constraints for an I2C device and sends them as few multi-byte
+ * bursts as possible. Every byte on the bus takes 9 clock cycles to transfer, 90 microseconds at the standard clock of
+ * 100 kHz or 22.5 microseconds at 400 kHz, so a requested delay that is shorter than that is already satisfied by the
+ * following byte and does not split the burst. Only longer delays (e.g. the 1.52 ms a LCD1602 needs to clear the
+ * display) end the current burst and wait before the next one is sent. The byte time follows the bus clock set on the
+ * device with I2CBase.setBusClockHz.
+ * <p>
+ * The bus stays locked for the whole commit, so no other component on the same bus can write in between.
+ * A transaction can be reused after commit() or reset() without allocating new buffers.
+ */
+public class I2CTransaction {
+    /**
+     * Clock of the I2C standard mode, which the Raspberry Pi uses unless dtparam=i2c_arm_baudrate is set
+     */
+    public static final int STANDARD_MODE_CLOCK_HZ = 100_000;
+
+    /**
+     * Clock cycles needed to transfer one byte (8 data bits + ack)
+     */
+    public static final int BYTE_TRANSFER_CYCLES = 9;
+
+    /**
+     * Time needed to transfer one byte at the I2C standard mode clock of 100 kHz
+     */
+    public static final long BYTE_TRANSFER_NANOS = BYTE_TRANSFER_CYCLES * 1_000_000_000L / STANDARD_MODE_CLOCK_HZ;
+
+    /**
+     * Largest write the linux i2c-dev driver accepts in one message
+     */
+    public static final int MAX_BURST_LENGTH = 8192;
+
+    private final I2CBase device;
+    private byte[] data = new byte[64];
+    private int length = 0;
+
+    // positions in data after which the bus has to be idle for the given time
+    private int[] pausePositions = new int[4];
+    private long[] pauseNanos = new long[4];
+    private int pauseCount = 0;
+
+    I2CTransaction(I2CBase device) {
+        this.device = device;
+    }
+
+    /**
+     * Appends a single byte to the transaction
+     *
+     * @param value byte to write
+     * @return this transaction
+     */
+    public I2CTransaction write(byte value) {
+        if (length == data.length) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = value;
+        return this;
+    }
+
+    /**
+     * Appends multiple bytes to the transaction
+     *
+     * @param values bytes to write
+     * @return this transaction
+     */
+    public I2CTransaction write(byte... values) {
+        for (byte value : values) {
+            write(value);
+        }
+        return this;
+    }
+
+    /**
+     * Requires the bus to stay idle for at least the given time after the last appended byte. Delays shorter than
+     * the transfer time of one byte at the bus clock of the device are covered by the next byte and therefore do not
+     * split the burst.
+     *
+     * @param nanos minimum delay in nanoseconds
+     * @return this transaction
+     */
+    public I2CTransaction delay(long nanos) {
+        if (nanos <= device.getByteTransferNanos() || length == 0) {
+            return this;
+        }
+
+        if (pauseCount > 0 && pausePositions[pauseCount - 1] == length) {
+            // two delays in a row add up
+            pauseNanos[pauseCount - 1] += nanos;
+            return this;
+        }
+
+        if (pauseCount == pausePositions.length) {
+            pausePositions = Arrays.copyOf(pausePositions, pauseCount * 2);
+            pauseNanos = Arrays.copyOf(pauseNanos, pauseCount * 2);
+        }
+        pausePositions[pauseCount] = length;
+        pauseNanos[pauseCount] = nanos;
+        pauseCount++;
+        return this;
+    }
+
+    /**
+     * Sends all collected bytes to the device and resets the transaction afterwards. Errors are reported to the
+     * console of the device.
+     */
+    public void commit() {
+        try {
+            commitChecked();
+        } catch (I2CException ex) {
+            device.reportError(ex);
+        }
+    }
+
+    /**
+     * Sends all collected bytes to the device and resets the transaction afterwards. The remaining bursts are
+     * discarded after the first failed burst.
+     *
+     * @throws I2CException Thrown if a burst could not be written
+     */
+    public void commitChecked() throws I2CException {
+        device.lockBus();
+        try {
+            int start = 0;
+            for (int i = 0; i < pauseCount; i++) {
+                sendBursts(start, pausePositions[i]);
+                device.pause(pauseNanos[i]);
+                start = pausePositions[i];
+            }
+            sendBursts(start, length);
+        } finally {
+            device.unlockBus();
+            reset();
+        }
+    }
+
+    /**
+     * Discards all collected bytes and delays
+     */
+    public void reset() {
+        length = 0;
+        pauseCount = 0;
+    }
+
+    /**
+     * @return number of bytes collected so far
+     */
+    public int size() {
+        return length;
+    }
+
+    private void sendBursts(int start, int end) throws I2CException {
+        while (start < end) {
+            int size = Math.min(end - start, MAX_BURST_LENGTH);
+            device.writeBurst(data, start, size);
+            start += size;
+        }
+    }
+}
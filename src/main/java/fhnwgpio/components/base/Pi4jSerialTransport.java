@@ -0,0 +1,87 @@
+package fhnwgpio.components.base;
+
+import com.pi4j.io.serial.Baud;
+import com.pi4j.io.serial.Serial;
+import com.pi4j.io.serial.SerialConfig;
+import com.pi4j.io.serial.SerialFactory;
+import com.pi4j.io.serial.SerialPort;
+import fhnwgpio.components.helper.ComponentLogger;
+
+import java.io.IOException;
+
+/**
+ * SerialTransport on the built-in default serial port of the Raspberry Pi using pi4j
+ */
+public class Pi4jSerialTransport implements SerialTransport {
+    private final Serial serial;
+
+    /**
+     * Creates the transport for the default serial port. The port is opened with open().
+     */
+    public Pi4jSerialTransport() {
+        serial = SerialFactory.createInstance();
+    }
+
+    /**
+     * Opens the default serial port of the Raspberry Pi.
+     *
+     * @param baudRate 9600, 19200, 38400, 57600 or 115200
+     */
+    @Override
+    public void open(int baudRate) throws IOException, InterruptedException {
+        SerialConfig config = new SerialConfig();
+        config.device(SerialPort.getDefaultPort()).baud(getBaud(baudRate));
+        serial.open(config);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return serial.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serial.close();
+    }
+
+    @Override
+    public int available() throws IOException {
+        return serial.available();
+    }
+
+    @Override
+    public byte[] read(int length) throws IOException {
+        return serial.read(length);
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        serial.write(data);
+    }
+
+    /**
+     * Maps a supported baud rate to the pi4j baud rate.
+     *
+     * @param baudRate The baud rate.
+     * @return The pi4j baud rate.
+     */
+    private static Baud getBaud(int baudRate) {
+        switch (baudRate) {
+            case 9600:
+                return Baud._9600;
+            case 19200:
+                return Baud._19200;
+            case 38400:
+                return Baud._38400;
+            case 57600:
+                return Baud._57600;
+            case 115200:
+                return Baud._115200;
+            default:
+                IllegalArgumentException exception = new IllegalArgumentException(
+                        "Pi4jSerialTransport: Baud rate " + baudRate + " is not supported");
+                ComponentLogger.logError(exception.getMessage());
+                throw exception;
+        }
+    }
+}
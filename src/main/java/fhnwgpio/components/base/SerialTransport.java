@@ -0,0 +1,54 @@
+package fhnwgpio.components.base;
+
+import java.io.IOException;
+
+/**
+ * Byte stream of a serial port as the serial components need it. The Pi4jSerialTransport talks to the serial port of
+ * the Raspberry Pi, other implementations (e.g. the SimulatedSerialCamera) allow running the components without the
+ * hardware.
+ */
+public interface SerialTransport {
+    /**
+     * Opens the port with the baud rate. The port has to be closed before it is opened with another baud rate.
+     *
+     * @param baudRate baud rate of the port
+     * @throws IOException          Exception that can be thrown when opening the port
+     * @throws InterruptedException Exception that can be thrown when opening the port
+     */
+    void open(int baudRate) throws IOException, InterruptedException;
+
+    /**
+     * @return true if the port is open
+     */
+    boolean isOpen();
+
+    /**
+     * Closes the port
+     *
+     * @throws IOException Exception that can be thrown when closing the port
+     */
+    void close() throws IOException;
+
+    /**
+     * @return number of received bytes that can be read without blocking
+     * @throws IOException Exception that can be thrown when accessing the port
+     */
+    int available() throws IOException;
+
+    /**
+     * Reads received bytes without blocking
+     *
+     * @param length maximum number of bytes to read
+     * @return the bytes read, at most length and at most the available bytes
+     * @throws IOException Exception that can be thrown when reading from the port
+     */
+    byte[] read(int length) throws IOException;
+
+    /**
+     * Sends bytes
+     *
+     * @param data bytes to send
+     * @throws IOException Exception that can be thrown when writing to the port
+     */
+    void write(byte[] data) throws IOException;
+}
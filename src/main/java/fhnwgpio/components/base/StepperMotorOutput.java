@@ -0,0 +1,15 @@
+package fhnwgpio.components.base;
+
+/**
+ * Coil outputs of a stepper motor driver as the StepperMotorComponent needs them. The GpioStepperMotorOutput drives
+ * four GPIO pins of the Raspberry Pi, other implementations (e.g. the RecordingStepperMotorOutput) allow running the
+ * component without the hardware.
+ */
+public interface StepperMotorOutput {
+    /**
+     * Sets all four coils at once.
+     *
+     * @param coils bit 0 is the first coil, bit 3 the fourth coil. A set bit energizes the coil.
+     */
+    void write(int coils);
+}
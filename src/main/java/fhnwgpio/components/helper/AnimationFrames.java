@@ -0,0 +1,13 @@
+package fhnwgpio.components.helper;
+
+/**
+ * A sequence of animation frames that is rendered by the AnimationScheduler, one frame per tick.
+ */
+public interface AnimationFrames {
+    /**
+     * Renders the next frame.
+     *
+     * @return false if the animation is finished and no more frames should be rendered
+     */
+    boolean nextFrame();
+}
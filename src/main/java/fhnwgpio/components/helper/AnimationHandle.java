@@ -0,0 +1,78 @@
+package fhnwgpio.components.helper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Handle of an animation running on the AnimationScheduler. It allows to cancel the animation and to wait until it is
+ * finished.
+ */
+public class AnimationHandle {
+    private final AnimationFrames frames;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private ScheduledFuture<?> future;
+    private boolean cancelled = false;
+
+    AnimationHandle(AnimationFrames frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Renders one frame. Called by the scheduler on every tick.
+     */
+    void tick() {
+        if (isDone()) return;
+
+        try {
+            if (!frames.nextFrame()) {
+                finish();
+            }
+        } catch (RuntimeException ex) {
+            ComponentLogger.logError("AnimationScheduler: animation stopped because of an error " + ex.getMessage());
+            finish();
+        }
+    }
+
+    synchronized void setFuture(ScheduledFuture<?> future) {
+        this.future = future;
+        if (isDone()) future.cancel(false);
+    }
+
+    /**
+     * Stops the animation. A frame that is currently rendered is completed.
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+        }
+        finish();
+    }
+
+    /**
+     * @return true if the animation was cancelled before it was finished
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the animation is finished or was cancelled
+     */
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the animation is finished or cancelled.
+     *
+     * @throws InterruptedException Thrown if the waiting thread is interrupted
+     */
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+
+    private synchronized void finish() {
+        finished.countDown();
+        if (future != null) future.cancel(false);
+    }
+}
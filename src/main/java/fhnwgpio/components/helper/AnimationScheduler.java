@@ -0,0 +1,43 @@
+package fhnwgpio.components.helper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs animations of all components on one shared scheduler thread. Every animation renders its frames at a fixed
+ * rate, so many displays can animate at the same time without a thread per display and without blocking the caller.
+ */
+public final class AnimationScheduler {
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AnimationScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AnimationScheduler() {
+    }
+
+    /**
+     * Starts an animation. The first frame is rendered immediately, the following ones after every period.
+     *
+     * @param frames       frames of the animation
+     * @param periodMillis time between two frames in milliseconds, a period of 0 renders a frame every millisecond
+     * @return handle to cancel or wait for the animation
+     */
+    public static AnimationHandle schedule(AnimationFrames frames, long periodMillis) {
+        if (periodMillis < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "AnimationScheduler: the period can't be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        AnimationHandle handle = new AnimationHandle(frames);
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(handle::tick, 0, Math.max(periodMillis, 1),
+                TimeUnit.MILLISECONDS);
+        handle.setFuture(future);
+        return handle;
+    }
+}
@@ -38,6 +38,15 @@ public class ComponentLogger {
         log(Level.INFO, message);
     }
 
+    /**
+     * checks if texts with the loglevel Debug are logged. Use it to avoid building log texts on hot paths
+     *
+     * @return true if debug logging is enabled
+     */
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
     /**
      * logs a text with the loglevel Debug
      *
@@ -46,4 +55,22 @@ public class ComponentLogger {
     public static void logDebug(String message) {
         log(Level.DEBUG, message);
     }
+
+    /**
+     * checks if texts with the loglevel Trace are logged. Use it to avoid building log texts on hot paths
+     *
+     * @return true if trace logging is enabled
+     */
+    public static boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    /**
+     * logs a text with the loglevel Trace
+     *
+     * @param message text to log
+     */
+    public static void logTrace(String message) {
+        log(Level.TRACE, message);
+    }
 }
@@ -0,0 +1,38 @@
+package fhnwgpio.components.helper;
+
+/**
+ * Sizes of common LCD modules with a HD44780 controller together with the DDRAM address of the first character of
+ * every row. Modules with 4 rows are two-line displays internally, their third and fourth row continue the first and
+ * second row in the DDRAM.
+ */
+public enum LcdGeometry {
+    LCD_1X16(16, 0x00),
+    LCD_2X16(16, 0x00, 0x40),
+    LCD_2X20(20, 0x00, 0x40),
+    LCD_4X16(16, 0x00, 0x40, 0x10, 0x50),
+    LCD_4X20(20, 0x00, 0x40, 0x14, 0x54);
+
+    private final int columns;
+    private final int[] rowOffsets;
+
+    LcdGeometry(int columns, int... rowOffsets) {
+        this.columns = columns;
+        this.rowOffsets = rowOffsets;
+    }
+
+    public int getRows() {
+        return rowOffsets.length;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param row row index starting at 0
+     * @return DDRAM address of the first character of the row
+     */
+    public int getRowOffset(int row) {
+        return rowOffsets[row];
+    }
+}
@@ -0,0 +1,82 @@
+package fhnwgpio.components.helper;
+
+import java.util.Arrays;
+
+/**
+ * A custom 5x8 character for LCD displays with a HD44780 controller. Every row of the bitmap is one byte, only the
+ * lower 5 bits are used. Example of a degree sign:
+ * <pre>
+ * new LcdGlyph(0b00110, 0b01001, 0b01001, 0b00110, 0b00000, 0b00000, 0b00000, 0b00000)
+ * </pre>
+ * Two glyphs with the same bitmap are equal, so the display uploads a bitmap only once.
+ */
+public final class LcdGlyph {
+    public static final int ROWS = 8;
+    public static final int COLUMNS = 5;
+
+    private final byte[] rows;
+
+    /**
+     * @param rows the 8 rows of the bitmap from top to bottom, the lowest bit is the rightmost pixel
+     * @throws IllegalArgumentException Thrown if not exactly 8 rows are provided or a row uses more than 5 bits
+     */
+    public LcdGlyph(int... rows) {
+        if (rows.length != ROWS) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "LcdGlyph: a glyph needs exactly " + ROWS + " rows");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        this.rows = new byte[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            if ((rows[i] & ~0x1F) != 0) {
+                IllegalArgumentException exception = new IllegalArgumentException(
+                        "LcdGlyph: a row can only use the lower " + COLUMNS + " bits");
+                ComponentLogger.logError(exception.getMessage());
+                throw exception;
+            }
+            this.rows[i] = (byte) rows[i];
+        }
+    }
+
+    /**
+     * Creates a bar that fills the given number of pixel columns from the left, used for bar graphs.
+     *
+     * @param columns number of filled columns between 0 and 5
+     * @return the bar glyph
+     */
+    public static LcdGlyph bar(int columns) {
+        if (columns < 0 || columns > COLUMNS) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "LcdGlyph: a bar has between 0 and " + COLUMNS + " columns");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        int row = (0x1F << (COLUMNS - columns)) & 0x1F;
+        int[] rows = new int[ROWS];
+        Arrays.fill(rows, row);
+        return new LcdGlyph(rows);
+    }
+
+    /**
+     * @param row row index from 0 (top) to 7 (bottom)
+     * @return the pixels of the row
+     */
+    public byte getRow(int row) {
+        return rows[row];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LcdGlyph)) return false;
+        return Arrays.equals(rows, ((LcdGlyph) o).rows);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(rows);
+    }
+}
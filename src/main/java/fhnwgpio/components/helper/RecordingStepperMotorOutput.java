@@ -0,0 +1,74 @@
+package fhnwgpio.components.helper;
+
+import fhnwgpio.components.base.StepperMotorOutput;
+
+import java.util.Arrays;
+
+/**
+ * In-process stand-in for the coils of a stepper motor. It records every write with its coil pattern and time, so
+ * the StepperMotorComponent can run without a Raspberry Pi and the order, the number and the timing of its writes can
+ * be checked.
+ */
+public class RecordingStepperMotorOutput implements StepperMotorOutput {
+    private int[] patterns = new int[1024];
+    private long[] times = new long[1024];
+    private int writeCount = 0;
+    private long pinChangeCount = 0;
+    private int coils = 0;
+
+    @Override
+    public synchronized void write(int coils) {
+        if (writeCount == patterns.length) {
+            patterns = Arrays.copyOf(patterns, writeCount * 2);
+            times = Arrays.copyOf(times, writeCount * 2);
+        }
+        patterns[writeCount] = coils & 0b1111;
+        times[writeCount] = System.nanoTime();
+        writeCount++;
+        pinChangeCount += Integer.bitCount((coils ^ this.coils) & 0b1111);
+        this.coils = coils & 0b1111;
+    }
+
+    /**
+     * @return number of writes since the recording was cleared
+     */
+    public synchronized int getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return number of coils that changed their state, which is the number of pin writes on the GPIO pins
+     */
+    public synchronized long getPinChangeCount() {
+        return pinChangeCount;
+    }
+
+    /**
+     * @return current coil pattern, bit 0 is the first coil
+     */
+    public synchronized int getCoils() {
+        return coils;
+    }
+
+    /**
+     * @return coil patterns of all writes in order
+     */
+    public synchronized int[] getPatterns() {
+        return Arrays.copyOf(patterns, writeCount);
+    }
+
+    /**
+     * @return System.nanoTime() of all writes in order
+     */
+    public synchronized long[] getTimes() {
+        return Arrays.copyOf(times, writeCount);
+    }
+
+    /**
+     * Clears the recorded writes. The current coil pattern is kept.
+     */
+    public synchronized void clear() {
+        writeCount = 0;
+        pinChangeCount = 0;
+    }
+}
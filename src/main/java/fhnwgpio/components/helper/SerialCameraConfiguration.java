@@ -0,0 +1,157 @@
+package fhnwgpio.components.helper;
+
+import java.util.EnumMap;
+
+/**
+ * Settings of the grove serial camera. A new configuration captures 640x480 jpg pictures in packages of 512 bytes at
+ * 9600 baud, the baud rate the camera starts with. The setters can be chained, similar to the RaspiVidConfiguration.
+ * <p>
+ * The values are checked by the SerialCameraComponent when the configuration is used.
+ */
+public class SerialCameraConfiguration {
+    private Resolution resolution = Resolution.VGA_640X480;
+    private int packageSize = 512;
+    private int baudRate = 9600;
+    private boolean autoTunePackageSize = false;
+    private final EnumMap<Step, Long> timeouts = new EnumMap<>(Step.class);
+
+    /**
+     * Steps of the camera protocol that wait for an answer of the camera
+     */
+    public enum Step {
+        SYNC(5000),
+        BAUD_RATE(1000),
+        SETTINGS(1000),
+        PACKAGE_SIZE(1000),
+        SNAPSHOT(2000),
+        PICTURE_LENGTH(1000),
+        PACKAGE(1000);
+
+        private final long defaultTimeoutMillis;
+
+        Step(long defaultTimeoutMillis) {
+            this.defaultTimeoutMillis = defaultTimeoutMillis;
+        }
+
+        /**
+         * @return time the camera may take to answer in milliseconds if no other timeout is configured. For the sync
+         * this is the time for all sync attempts together, for the other steps it comes on top of the transfer time
+         * of the answer.
+         */
+        public long getDefaultTimeoutMillis() {
+            return defaultTimeoutMillis;
+        }
+    }
+
+    /**
+     * Resolutions of the jpg pictures according to the camera documentation
+     */
+    public enum Resolution {
+        RES_80X64(80, 64, (byte) 0x01),
+        QQVGA_160X128(160, 128, (byte) 0x03),
+        QVGA_320X240(320, 240, (byte) 0x05),
+        VGA_640X480(640, 480, (byte) 0x07);
+
+        private final int width;
+        private final int height;
+        private final byte code;
+
+        Resolution(int width, int height, byte code) {
+            this.width = width;
+            this.height = height;
+            this.code = code;
+        }
+
+        /**
+         * @return width of the picture in pixels
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return height of the picture in pixels
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return value of the resolution in the initial command of the camera
+         */
+        public byte getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * default is 640x480
+     *
+     * @param resolution resolution of the jpg pictures
+     */
+    public SerialCameraConfiguration resolution(Resolution resolution) {
+        this.resolution = resolution;
+        return this;
+    }
+
+    /**
+     * default is 512 bytes
+     *
+     * @param packageSize size of the packages the picture is transferred in, between 16 and 2048 bytes
+     */
+    public SerialCameraConfiguration packageSize(int packageSize) {
+        this.packageSize = packageSize;
+        return this;
+    }
+
+    /**
+     * default is 9600 baud, higher baud rates depend on the wiring and need to be tested with the camera
+     *
+     * @param baudRate baud rate the camera is switched to, 9600, 19200, 38400, 57600 or 115200
+     */
+    public SerialCameraConfiguration baudRate(int baudRate) {
+        this.baudRate = baudRate;
+        return this;
+    }
+
+    /**
+     * measures the available package sizes when the camera is created and uses the fastest reliable one instead of
+     * the configured package size
+     */
+    public SerialCameraConfiguration autoTunePackageSize() {
+        this.autoTunePackageSize = true;
+        return this;
+    }
+
+    /**
+     * defaults are defined by the steps
+     *
+     * @param step          protocol step
+     * @param timeoutMillis time the camera may take to answer in milliseconds
+     */
+    public SerialCameraConfiguration timeout(Step step, long timeoutMillis) {
+        timeouts.put(step, timeoutMillis);
+        return this;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    public int getPackageSize() {
+        return packageSize;
+    }
+
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    public boolean isAutoTunePackageSize() {
+        return autoTunePackageSize;
+    }
+
+    public long getTimeout(Step step) {
+        Long timeout = timeouts.get(step);
+        return timeout == null ? step.getDefaultTimeoutMillis() : timeout;
+    }
+}
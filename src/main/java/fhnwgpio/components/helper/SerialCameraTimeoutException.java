@@ -0,0 +1,47 @@
+package fhnwgpio.components.helper;
+
+import java.io.IOException;
+
+/**
+ * Thrown if the serial camera does not answer a protocol step within its timeout
+ */
+public class SerialCameraTimeoutException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final SerialCameraConfiguration.Step step;
+    private final long timeoutMillis;
+    private final int receivedBytes;
+    private final int expectedBytes;
+
+    /**
+     * @param step          protocol step that timed out
+     * @param timeoutMillis timeout of the step in milliseconds
+     * @param receivedBytes number of bytes of the answer that arrived
+     * @param expectedBytes number of bytes the answer should have had
+     */
+    public SerialCameraTimeoutException(SerialCameraConfiguration.Step step, long timeoutMillis, int receivedBytes,
+                                        int expectedBytes) {
+        super("SerialCameraComponent: No answer to " + step + " within " + timeoutMillis + " ms, received "
+                + receivedBytes + " of " + expectedBytes + " bytes");
+        this.step = step;
+        this.timeoutMillis = timeoutMillis;
+        this.receivedBytes = receivedBytes;
+        this.expectedBytes = expectedBytes;
+    }
+
+    public SerialCameraConfiguration.Step getStep() {
+        return step;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public int getExpectedBytes() {
+        return expectedBytes;
+    }
+}
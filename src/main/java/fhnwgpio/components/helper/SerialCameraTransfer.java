@@ -0,0 +1,72 @@
+package fhnwgpio.components.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the transfer of one picture from the serial camera. An instance is created by the SerialCameraComponent
+ * after every picture and handed to its transfer listener.
+ */
+public class SerialCameraTransfer {
+    private final int packages;
+    private final long bytes;
+    private final int retries;
+    private final long durationNanos;
+    private final int packageSize;
+    private final int baudRate;
+
+    /**
+     * @param packages      number of packages received correctly
+     * @param bytes         number of jpg bytes received
+     * @param retries       number of packages that were requested again
+     * @param durationNanos duration of the package transfer in nanoseconds
+     * @param packageSize   package size used for the transfer
+     * @param baudRate      baud rate used for the transfer
+     */
+    public SerialCameraTransfer(int packages, long bytes, int retries, long durationNanos, int packageSize,
+                                int baudRate) {
+        this.packages = packages;
+        this.bytes = bytes;
+        this.retries = retries;
+        this.durationNanos = durationNanos;
+        this.packageSize = packageSize;
+        this.baudRate = baudRate;
+    }
+
+    public int getPackages() {
+        return packages;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getPackageSize() {
+        return packageSize;
+    }
+
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    /**
+     * @return achieved throughput in bytes per second
+     */
+    public long getBytesPerSecond() {
+        return bytes * TimeUnit.SECONDS.toNanos(1) / Math.max(1, durationNanos);
+    }
+
+    @Override
+    public String toString() {
+        return bytes + " bytes in " + packages + " packages of " + packageSize + " bytes, " + retries + " retries, "
+                + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms (" + getBytesPerSecond() + " bytes/s at "
+                + baudRate + " baud)";
+    }
+}
@@ -0,0 +1,383 @@
+package fhnwgpio.components.helper;
+
+import fhnwgpio.components.base.SerialTransport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the grove serial camera. It speaks the sync, initial, package size, baud rate, snapshot,
+ * get picture and data package commands of the camera protocol and answers with a given jpg payload, so the
+ * SerialCameraComponent can run without a Raspberry Pi.
+ * Documentation: https://files.seeedstudio.com/wiki/Grove-Serial_Camera_Kit/res/cj-ov528_protocol.pdf
+ * <p>
+ * Every answer starts after the configured latency and then arrives byte by byte at the speed of the baud rate (start
+ * bit, 8 data bits, stop bit). Bits of the data packages are flipped with the configured bit error rate, the command
+ * answers are never corrupted. Commands written at another baud rate than the one of the camera are lost.
+ */
+public class SimulatedSerialCamera implements SerialTransport {
+    private static final int COMMAND_SIZE = 6;
+    private static final int PACKAGE_OVERHEAD = 6;
+    private static final int INITIAL_BAUD_RATE = 9600;
+
+    private final Random random;
+    private byte[] jpeg;
+    private long latencyNanos = 0;
+    private double bitErrorRate = 0;
+
+    private boolean open = false;
+    private int hostBaudRate = INITIAL_BAUD_RATE;
+    private int cameraBaudRate = INITIAL_BAUD_RATE;
+    private int packageSize = 64;
+    private int ackCounter = 0;
+    private final byte[] command = new byte[COMMAND_SIZE];
+    private int commandLength = 0;
+
+    // bytes on their way to the host and the time at which each of them is completely received
+    private byte[] output = new byte[1024];
+    private long[] readyNanos = new long[1024];
+    private int head = 0;
+    private int tail = 0;
+    private long lineFreeNanos = 0;
+
+    private long commandCount = 0;
+    private long packageCount = 0;
+    private long corruptedPackageCount = 0;
+
+    /**
+     * Creates a simulated camera that answers every picture request with the jpg payload.
+     *
+     * @param jpeg bytes of the jpg picture
+     */
+    public SimulatedSerialCamera(byte[] jpeg) {
+        this(jpeg, System.nanoTime());
+    }
+
+    /**
+     * Creates a simulated camera with a fixed seed for the bit errors, so a run can be repeated.
+     *
+     * @param jpeg bytes of the jpg picture
+     * @param seed seed of the random bit errors
+     */
+    public SimulatedSerialCamera(byte[] jpeg, long seed) {
+        setJpeg(jpeg);
+        random = new Random(seed);
+    }
+
+    /**
+     * Creates a payload that starts with the jpg start tag and ends with the jpg end tag, filled with random bytes
+     * that never contain the end tag.
+     *
+     * @param length length of the payload, at least 4 bytes
+     * @param seed   seed of the random bytes
+     * @return the payload
+     */
+    public static byte[] createJpegPayload(int length, long seed) {
+        if (length < 4) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SimulatedSerialCamera: A jpg payload needs at least 4 bytes");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        Random random = new Random(seed);
+        byte[] payload = new byte[length];
+        random.nextBytes(payload);
+        for (int i = 2; i < length - 2; i++) {
+            if (payload[i] == (byte) 0xFF) payload[i] = (byte) 0xFE;
+        }
+        payload[0] = (byte) 0xFF;
+        payload[1] = (byte) 0xD8;
+        payload[length - 2] = (byte) 0xFF;
+        payload[length - 1] = (byte) 0xD9;
+        return payload;
+    }
+
+    /**
+     * @param jpeg bytes of the jpg picture sent for the next picture requests
+     */
+    public synchronized void setJpeg(byte[] jpeg) {
+        if (jpeg == null || jpeg.length == 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SimulatedSerialCamera: The jpg payload must not be empty");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        this.jpeg = jpeg;
+    }
+
+    /**
+     * default is 0
+     *
+     * @param latencyMicros time the camera needs before it starts to answer a command
+     */
+    public synchronized void setLatencyMicros(long latencyMicros) {
+        if (latencyMicros < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SimulatedSerialCamera: The latency must not be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    /**
+     * default is 0
+     *
+     * @param bitErrorRate probability that a bit of a data package is flipped, between 0 and 1
+     */
+    public synchronized void setBitErrorRate(double bitErrorRate) {
+        if (bitErrorRate < 0 || bitErrorRate > 1) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "SimulatedSerialCamera: The bit error rate needs to be between 0 and 1");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        this.bitErrorRate = bitErrorRate;
+    }
+
+    /**
+     * @return number of commands the camera received
+     */
+    public synchronized long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @return number of data packages the camera sent
+     */
+    public synchronized long getPackageCount() {
+        return packageCount;
+    }
+
+    /**
+     * @return number of data packages with at least one flipped bit
+     */
+    public synchronized long getCorruptedPackageCount() {
+        return corruptedPackageCount;
+    }
+
+    /**
+     * @return baud rate the camera currently communicates with
+     */
+    public synchronized int getCameraBaudRate() {
+        return cameraBaudRate;
+    }
+
+    @Override
+    public synchronized void open(int baudRate) throws IOException {
+        if (open) {
+            throw new IOException("SimulatedSerialCamera: The port is already open");
+        }
+        open = true;
+        hostBaudRate = baudRate;
+        head = 0;
+        tail = 0;
+        commandLength = 0;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        checkOpen();
+        long now = System.nanoTime();
+        int count = 0;
+        while (head + count < tail && readyNanos[head + count] <= now) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized byte[] read(int length) throws IOException {
+        int count = Math.min(length, available());
+        byte[] bytes = Arrays.copyOfRange(output, head, head + count);
+        head += count;
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized void write(byte[] data) throws IOException {
+        checkOpen();
+        if (hostBaudRate != cameraBaudRate) {
+            return;
+        }
+
+        for (byte value : data) {
+            // every command starts with 0xAA, other bytes are skipped until the next command starts
+            if (commandLength == 0 && value != (byte) 0xAA) continue;
+            command[commandLength++] = value;
+            if (commandLength == COMMAND_SIZE) {
+                commandLength = 0;
+                commandCount++;
+                handleCommand();
+            }
+        }
+    }
+
+    private void handleCommand() {
+        switch (command[1]) {
+            case 0x0D: // sync
+                sendAck();
+                send((byte) 0xAA, (byte) 0x0D, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00);
+                break;
+            case 0x01: // initial
+                sendAck();
+                break;
+            case 0x06: // set package size
+                int size = (command[3] & 0xff) | ((command[4] & 0xff) << 8);
+                if (size <= PACKAGE_OVERHEAD || size > 2048) {
+                    sendNak();
+                } else {
+                    packageSize = size;
+                    sendAck();
+                }
+                break;
+            case 0x07: // set baud rate, the acknowledgement is still sent at the old baud rate
+                int baudRate = getBaudRate(command[2]);
+                if (baudRate == 0) {
+                    sendNak();
+                } else {
+                    sendAck();
+                    cameraBaudRate = baudRate;
+                }
+                break;
+            case 0x05: // snapshot
+                sendAck();
+                break;
+            case 0x04: // get picture
+                sendAck();
+                send((byte) 0xAA, (byte) 0x0A, (byte) 0x01, (byte) jpeg.length, (byte) (jpeg.length >> 8),
+                        (byte) (jpeg.length >> 16));
+                break;
+            case 0x0E: // acknowledgement of the host, requests a data package unless it ends the picture
+                if (command[2] == 0x00 && !(command[4] == (byte) 0xF0 && command[5] == (byte) 0xF0)) {
+                    sendPackage((command[4] & 0xff) | ((command[5] & 0xff) << 8));
+                }
+                break;
+            default:
+                sendNak();
+        }
+    }
+
+    /**
+     * Sends a data package: package id, data size, data, check sum and a 0x00.
+     */
+    private void sendPackage(int packageId) {
+        int maxDataSize = packageSize - PACKAGE_OVERHEAD;
+        int offset = packageId * maxDataSize;
+        int dataSize = Math.max(0, Math.min(maxDataSize, jpeg.length - offset));
+
+        byte[] data = new byte[dataSize + PACKAGE_OVERHEAD];
+        data[0] = (byte) packageId;
+        data[1] = (byte) (packageId >> 8);
+        data[2] = (byte) dataSize;
+        data[3] = (byte) (dataSize >> 8);
+        // a package past the end of the picture is answered without data
+        if (dataSize > 0) System.arraycopy(jpeg, offset, data, 4, dataSize);
+        byte checkSum = 0;
+        for (int i = 0; i < dataSize + 4; i++) {
+            checkSum += data[i];
+        }
+        data[dataSize + 4] = checkSum;
+        data[dataSize + 5] = 0x00;
+
+        packageCount++;
+        if (corrupt(data)) corruptedPackageCount++;
+        send(data);
+    }
+
+    /**
+     * Flips each bit of the data with the bit error rate.
+     *
+     * @return true if at least one bit was flipped
+     */
+    private boolean corrupt(byte[] data) {
+        if (bitErrorRate == 0) return false;
+
+        // probability that at least one of the 8 bits of a byte is flipped
+        double byteErrorRate = 1 - Math.pow(1 - bitErrorRate, 8);
+        boolean corrupted = false;
+        for (int i = 0; i < data.length; i++) {
+            if (random.nextDouble() < byteErrorRate) {
+                data[i] ^= (byte) (1 << random.nextInt(8));
+                corrupted = true;
+            }
+        }
+        return corrupted;
+    }
+
+    private void sendAck() {
+        send((byte) 0xAA, (byte) 0x0E, command[1], (byte) ackCounter++, (byte) 0x00, (byte) 0x00);
+    }
+
+    private void sendNak() {
+        send((byte) 0xAA, (byte) 0x0F, (byte) 0x00, (byte) ackCounter++, (byte) 0x00, (byte) 0x00);
+    }
+
+    /**
+     * Queues an answer. It starts after the latency, but not before the previous answer was transferred.
+     */
+    private void send(byte... bytes) {
+        if (tail + bytes.length > output.length) {
+            int length = tail - head;
+            int capacity = Math.max(output.length, length + bytes.length) * 2;
+            output = Arrays.copyOfRange(output, head, head + capacity);
+            readyNanos = Arrays.copyOfRange(readyNanos, head, head + capacity);
+            head = 0;
+            tail = length;
+        }
+
+        long byteNanos = TimeUnit.SECONDS.toNanos(10) / cameraBaudRate;
+        long start = Math.max(System.nanoTime() + latencyNanos, lineFreeNanos);
+        for (int i = 0; i < bytes.length; i++) {
+            output[tail] = bytes[i];
+            readyNanos[tail] = start + (i + 1) * byteNanos;
+            tail++;
+        }
+        lineFreeNanos = start + bytes.length * byteNanos;
+    }
+
+    private void checkOpen() throws IOException {
+        if (!open) {
+            throw new IOException("SimulatedSerialCamera: The port is not open");
+        }
+    }
+
+    /**
+     * Maps the first divider of the set baud rate command to the baud rate.
+     *
+     * @return the baud rate or 0 if the divider is not supported
+     */
+    private static int getBaudRate(byte divider) {
+        switch (divider) {
+            case (byte) 0xBF:
+                return 9600;
+            case 0x5F:
+                return 19200;
+            case 0x2F:
+                return 38400;
+            case 0x1F:
+                return 57600;
+            case 0x0F:
+                return 115200;
+            default:
+                return 0;
+        }
+    }
+}
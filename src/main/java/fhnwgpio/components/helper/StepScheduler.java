@@ -0,0 +1,131 @@
+package fhnwgpio.components.helper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for the deadlines of the steps of a stepper motor with microsecond resolution. The deadlines are absolute
+ * offsets from the start of a move, so a late step does not delay the following ones.
+ * <p>
+ * Thread.sleep only resolves whole milliseconds and often wakes up late. The scheduler therefore parks the thread
+ * until shortly before the deadline and busy-spins for the rest of the time. The lateness of every step is recorded
+ * and can be queried as jitter statistics.
+ */
+public class StepScheduler {
+    /**
+     * Default time before the deadline from which on the scheduler spins instead of parking
+     */
+    public static final long DEFAULT_SPIN_MICROS = 200;
+
+    private volatile long spinNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_SPIN_MICROS);
+    private long origin;
+
+    private long sampleCount = 0;
+    private long jitterSum = 0;
+    private double jitterSquareSum = 0;
+    private long maxJitter = 0;
+
+    /**
+     * Starts a move. All following deadlines are relative to this point in time.
+     */
+    public void start() {
+        origin = System.nanoTime();
+    }
+
+    /**
+     * Waits until the deadline is reached and records how late it was reached.
+     *
+     * @param deadlineNanos deadline in nanoseconds after the start of the move
+     * @throws InterruptedException thrown if the thread is interrupted while waiting
+     */
+    public void awaitDeadline(long deadlineNanos) throws InterruptedException {
+        long deadline = origin + deadlineNanos;
+        long remaining = deadline - System.nanoTime();
+
+        while (remaining > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        while (remaining > 0) {
+            remaining = deadline - System.nanoTime();
+        }
+
+        record(-remaining);
+    }
+
+    private synchronized void record(long jitter) {
+        sampleCount++;
+        jitterSum += jitter;
+        jitterSquareSum += (double) jitter * jitter;
+        maxJitter = Math.max(maxJitter, jitter);
+    }
+
+    /**
+     * default is 200 microseconds. A longer spin time makes the steps more precise, but keeps the CPU busy.
+     *
+     * @param spinMicros time before the deadline from which on the scheduler spins instead of parking
+     */
+    public void setSpinMicros(long spinMicros) {
+        if (spinMicros < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "StepScheduler: The spin time must not be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+        this.spinNanos = TimeUnit.MICROSECONDS.toNanos(spinMicros);
+    }
+
+    public long getSpinMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(spinNanos);
+    }
+
+    /**
+     * @return number of deadlines waited for since the statistics were reset
+     */
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return average time by which the deadlines were missed in nanoseconds
+     */
+    public synchronized double getMeanJitterNanos() {
+        return sampleCount == 0 ? 0 : (double) jitterSum / sampleCount;
+    }
+
+    /**
+     * @return standard deviation of the time by which the deadlines were missed in nanoseconds
+     */
+    public synchronized double getJitterStandardDeviationNanos() {
+        if (sampleCount == 0) return 0;
+        double mean = (double) jitterSum / sampleCount;
+        return Math.sqrt(Math.max(0, jitterSquareSum / sampleCount - mean * mean));
+    }
+
+    /**
+     * @return longest time by which a deadline was missed in nanoseconds
+     */
+    public synchronized long getMaxJitterNanos() {
+        return maxJitter;
+    }
+
+    /**
+     * Resets the jitter statistics.
+     */
+    public synchronized void resetStatistics() {
+        sampleCount = 0;
+        jitterSum = 0;
+        jitterSquareSum = 0;
+        maxJitter = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return sampleCount + " steps, jitter mean " + Math.round(getMeanJitterNanos() / 1000) + " us, std dev "
+                + Math.round(getJitterStandardDeviationNanos() / 1000) + " us, max "
+                + TimeUnit.NANOSECONDS.toMicros(maxJitter) + " us";
+    }
+}
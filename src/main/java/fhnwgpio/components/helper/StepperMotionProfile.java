@@ -0,0 +1,190 @@
+package fhnwgpio.components.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Velocity profile for the moves of a stepper motor. The profile accelerates the motor from standstill to its maximum
+ * speed, runs at this speed and decelerates it to standstill at the end of the move. Short moves that can not reach
+ * the maximum speed turn around at a lower speed.
+ * <p>
+ * The trapezoidal profile accelerates with a constant acceleration. The S-curve profile ramps the speed with a
+ * smoothstep curve, so the acceleration starts and ends at zero and neither the acceleration nor the jerk exceed
+ * their limits.
+ */
+public class StepperMotionProfile {
+    private static final int BISECTION_ITERATIONS = 48;
+
+    private final Type type;
+    private final double maxSpeed;
+    private final double acceleration;
+    private final double jerk;
+
+    /**
+     * Shapes of the velocity profile
+     */
+    public enum Type {
+        TRAPEZOIDAL,
+        S_CURVE
+    }
+
+    private StepperMotionProfile(Type type, double maxSpeed, double acceleration, double jerk) {
+        checkPositive(maxSpeed, "maxSpeed");
+        checkPositive(acceleration, "acceleration");
+        checkPositive(jerk, "jerk");
+
+        this.type = type;
+        this.maxSpeed = maxSpeed;
+        this.acceleration = acceleration;
+        this.jerk = jerk;
+    }
+
+    /**
+     * Creates a profile with constant acceleration and deceleration.
+     *
+     * @param maxSpeed     maximum speed in steps per second
+     * @param acceleration acceleration in steps per second squared
+     * @return the profile
+     */
+    public static StepperMotionProfile trapezoidal(double maxSpeed, double acceleration) {
+        return new StepperMotionProfile(Type.TRAPEZOIDAL, maxSpeed, acceleration, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Creates a profile with smooth acceleration and deceleration.
+     *
+     * @param maxSpeed     maximum speed in steps per second
+     * @param acceleration maximum acceleration in steps per second squared
+     * @param jerk         maximum jerk in steps per second cubed
+     * @return the profile
+     */
+    public static StepperMotionProfile sCurve(double maxSpeed, double acceleration, double jerk) {
+        return new StepperMotionProfile(Type.S_CURVE, maxSpeed, acceleration, jerk);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public double getAcceleration() {
+        return acceleration;
+    }
+
+    public double getJerk() {
+        return jerk;
+    }
+
+    /**
+     * Plans a move. Element i of the result is the time at which step i is done, relative to the start of the move.
+     * The last element is the end of the move, so the result has one element more than the number of steps.
+     *
+     * @param steps number of steps of the move
+     * @return times of the steps and of the end of the move in nanoseconds
+     */
+    public long[] planStepTimes(int steps) {
+        if (steps < 0) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "StepperMotionProfile: The number of steps must not be negative");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+
+        long[] times = new long[steps + 1];
+        if (steps == 0) return times;
+
+        // speed at the end of the acceleration, lower than the maximum speed if the move is too short
+        double peakSpeed = getPeakSpeed(steps);
+        double accelerationTime = getAccelerationTime(peakSpeed);
+        double accelerationSteps = peakSpeed * accelerationTime / 2;
+        double cruiseTime = (steps - 2 * accelerationSteps) / peakSpeed;
+        double duration = 2 * accelerationTime + Math.max(0, cruiseTime);
+
+        for (int i = 1; i <= steps; i++) {
+            double seconds;
+            if (i <= accelerationSteps) {
+                seconds = getAccelerationTime(i, peakSpeed, accelerationTime);
+            } else if (i < steps - accelerationSteps) {
+                seconds = accelerationTime + (i - accelerationSteps) / peakSpeed;
+            } else {
+                seconds = duration - getAccelerationTime(steps - i, peakSpeed, accelerationTime);
+            }
+            times[i] = Math.max(times[i - 1], Math.round(seconds * TimeUnit.SECONDS.toNanos(1)));
+        }
+        return times;
+    }
+
+    /**
+     * @return the highest speed that still leaves enough steps to decelerate to standstill
+     */
+    private double getPeakSpeed(int steps) {
+        if (getAccelerationDistance(maxSpeed) * 2 <= steps) return maxSpeed;
+
+        // the acceleration distance grows with the speed, so the peak speed can be found by bisection
+        double low = 0;
+        double high = maxSpeed;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            double speed = (low + high) / 2;
+            if (getAccelerationDistance(speed) * 2 <= steps) {
+                low = speed;
+            } else {
+                high = speed;
+            }
+        }
+        return low;
+    }
+
+    private double getAccelerationDistance(double speed) {
+        return speed * getAccelerationTime(speed) / 2;
+    }
+
+    /**
+     * @return time needed to accelerate from standstill to the speed
+     */
+    private double getAccelerationTime(double speed) {
+        if (type == Type.TRAPEZOIDAL) return speed / acceleration;
+
+        // the smoothstep ramp has its highest acceleration (1.5 v/t) in the middle and its highest jerk (6 v/t^2)
+        // at the start and the end
+        return Math.max(1.5 * speed / acceleration, Math.sqrt(6 * speed / jerk));
+    }
+
+    /**
+     * @return time after the start of the acceleration at which the motor has done the steps
+     */
+    private double getAccelerationTime(double steps, double peakSpeed, double accelerationTime) {
+        if (steps <= 0) return 0;
+        if (type == Type.TRAPEZOIDAL) return Math.sqrt(2 * steps / acceleration);
+
+        // position of the smoothstep ramp: s(u) = v * t * (u^3 - u^4 / 2) with u = time / acceleration time
+        double distance = steps / (peakSpeed * accelerationTime);
+        double low = 0;
+        double high = 1;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            double u = (low + high) / 2;
+            if (u * u * u - u * u * u * u / 2 < distance) {
+                low = u;
+            } else {
+                high = u;
+            }
+        }
+        return high * accelerationTime;
+    }
+
+    private static void checkPositive(double value, String name) {
+        if (!(value > 0)) {
+            IllegalArgumentException exception = new IllegalArgumentException(
+                    "StepperMotionProfile: " + name + " must be greater than 0");
+            ComponentLogger.logError(exception.getMessage());
+            throw exception;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " profile with a max speed of " + maxSpeed + " steps/s, an acceleration of " + acceleration
+                + " steps/s^2" + (type == Type.S_CURVE ? " and a jerk of " + jerk + " steps/s^3" : "");
+    }
+}
@@ -0,0 +1,114 @@
+package fhnwgpio.components;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+
+/**
+ * In-memory I2C device for the component tests. It answers every read with fixed bytes, counts the written bytes and
+ * can be switched to fail every transfer like a disconnected device or to write slowly like a busy bus.
+ */
+class FakeI2CDevice implements I2CDevice {
+    private final int address;
+    private final byte[] answer;
+    private volatile boolean failing = false;
+    private volatile long writeDelayMillis = 0;
+    private long writtenBytes = 0;
+
+    FakeI2CDevice(int address, byte... answer) {
+        this.address = address;
+        this.answer = answer;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    void setWriteDelayMillis(long writeDelayMillis) {
+        this.writeDelayMillis = writeDelayMillis;
+    }
+
+    synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override public int getAddress() {
+        return address;
+    }
+
+    @Override public void write(byte b) throws IOException {
+        write(new byte[] { b }, 0, 1);
+    }
+
+    @Override public void write(byte[] buffer, int offset, int size) throws IOException {
+        check();
+        if (writeDelayMillis > 0) {
+            try {
+                Thread.sleep(writeDelayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("FakeI2CDevice: interrupted");
+            }
+        }
+        synchronized (this) {
+            writtenBytes += size;
+        }
+    }
+
+    @Override public void write(byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override public void write(int address, byte b) throws IOException {
+        write(new byte[] { b }, 0, 1);
+    }
+
+    @Override public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        write(buffer, offset, size);
+    }
+
+    @Override public void write(int address, byte[] buffer) throws IOException {
+        write(buffer, 0, buffer.length);
+    }
+
+    @Override public int read() throws IOException {
+        check();
+        return answer.length > 0 ? answer[0] & 0xff : 0;
+    }
+
+    @Override public int read(byte[] buffer, int offset, int size) throws IOException {
+        check();
+        int count = Math.min(size, answer.length);
+        System.arraycopy(answer, 0, buffer, offset, count);
+        return count;
+    }
+
+    @Override public int read(int address) throws IOException {
+        return read();
+    }
+
+    @Override public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        return read(buffer, offset, size);
+    }
+
+    @Override public int read(byte[] writeBuffer, int writeOffset, int writeSize, byte[] readBuffer, int readOffset,
+            int readSize) throws IOException {
+        return read(readBuffer, readOffset, readSize);
+    }
+
+    // part of the pi4j interface, left without @Override for older versions
+    public void ioctl(long command, int value) throws IOException {
+        check();
+    }
+
+    public int ioctl(long command, java.nio.ByteBuffer data, java.nio.IntBuffer offsets) throws IOException {
+        check();
+        return 0;
+    }
+
+    private void check() throws IOException {
+        if (failing) {
+            throw new IOException("Error writing to i2c-1/0x" + Integer.toHexString(address) + ". Got '-20121'.");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package fhnwgpio.components;
+
+import fhnwgpio.components.helper.LcdGlyph;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class I2CLCDComponentTest {
+    private static final LcdGlyph GLYPH = new LcdGlyph(0x00, 0x0A, 0x0A, 0x00, 0x11, 0x0E, 0x00, 0x00);
+
+    @Test
+    void unchangedFrameIsNotSentAgain() {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.displayText("Hello", 1);
+        long written = device.getWrittenBytes();
+        lcd.flush();
+        assertEquals(written, device.getWrittenBytes());
+    }
+
+    @Test
+    void failedTransferRedrawsWholeFrame() {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        device.setFailing(true);
+        lcd.displayText("Hello", 1);
+        device.setFailing(false);
+        long written = device.getWrittenBytes();
+        lcd.flush();
+        assertTrue(device.getWrittenBytes() > written, "the frame of the failed transfer is sent again");
+    }
+
+    @Test
+    void failedBacklightTransferForgetsExpanderState() {
+        FakeI2CDevice reference = new FakeI2CDevice(0x27);
+        I2CLCDComponent referenceLcd = new I2CLCDComponent(reference);
+        referenceLcd.init();
+        referenceLcd.setBacklightState(false);
+        long referenceWritten = reference.getWrittenBytes();
+        referenceLcd.displayText("A", 2);
+
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        device.setFailing(true);
+        lcd.setBacklightState(false);
+        device.setFailing(false);
+        long written = device.getWrittenBytes();
+        lcd.displayText("A", 2);
+
+        assertEquals(reference.getWrittenBytes() - referenceWritten + 1, device.getWrittenBytes() - written,
+                "the first byte sets the expander up again");
+    }
+
+    @Test
+    void scrollTextWithoutDelayEndsOnEmptyRow() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.displayScrollText("Hello", 2, 0, false, false);
+        assertRowIsEmpty(device, lcd, 2);
+    }
+
+    @Test
+    void bounceTextWithoutDelayEndsOnEmptyRow() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.displayBounceText("Hello", 1, 0, false);
+        assertRowIsEmpty(device, lcd, 1);
+    }
+
+    @Test
+    void failedGlyphUploadIsRepeated() {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        device.setFailing(true);
+        lcd.getGlyphCharacter(GLYPH);
+        device.setFailing(false);
+
+        assertGlyphUploaded(device, lcd);
+    }
+
+    @Test
+    void failedGlyphUploadOfAsyncWriterIsRepeated() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.startAsyncWriter();
+        device.setFailing(true);
+        lcd.displayGlyph(GLYPH, 1, 0);
+        lcd.stopAsyncWriter();
+        device.setFailing(false);
+
+        assertGlyphUploaded(device, lcd);
+    }
+
+    @Test
+    void stoppedAnimationDoesNotOverwriteNewText() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        synchronized (lcd) {
+            lcd.startMarqueeText("Marquee", 1, 1, true);
+            // the first frame waits for the display while the animation is stopped
+            Thread.sleep(50);
+            lcd.stopAnimation();
+            lcd.displayText("New text on row ", 1);
+        }
+        Thread.sleep(50);
+
+        long written = device.getWrittenBytes();
+        lcd.displayText("New text on row ", 1);
+        assertEquals(written, device.getWrittenBytes());
+    }
+
+    @Test
+    void busyAsyncWriterDoesNotBlockCallers() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.startAsyncWriter();
+        device.setWriteDelayMillis(200);
+        lcd.displayText("A", 1);
+        Thread.sleep(20);
+
+        long start = System.nanoTime();
+        lcd.writeCharacter((byte) 'B');
+        lcd.setBacklightState(false);
+        long nanos = System.nanoTime() - start;
+        assertTrue(nanos < TimeUnit.MILLISECONDS.toNanos(100), "returned after " + nanos + " ns");
+        assertFalse(lcd.getBacklightState());
+
+        device.setWriteDelayMillis(0);
+        lcd.stopAsyncWriter();
+        // the character was written at the cursor behind the A
+        long written = device.getWrittenBytes();
+        lcd.displayText("AB", 1);
+        assertEquals(written, device.getWrittenBytes());
+    }
+
+    @Test
+    void interruptedAsyncWriterHandsUpdatesBack() throws InterruptedException {
+        FakeI2CDevice device = new FakeI2CDevice(0x27);
+        I2CLCDComponent lcd = new I2CLCDComponent(device);
+        lcd.init();
+        lcd.startAsyncWriter();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("I2CLCDWriter")) thread.interrupt();
+        }
+        for (int i = 0; i < 100 && lcd.isAsyncWriterRunning(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(lcd.isAsyncWriterRunning());
+
+        long written = device.getWrittenBytes();
+        lcd.displayText("Hello", 1);
+        assertTrue(device.getWrittenBytes() > written, "the update is sent by the calling thread");
+    }
+
+    private static void assertGlyphUploaded(FakeI2CDevice device, I2CLCDComponent lcd) {
+        long written = device.getWrittenBytes();
+        lcd.getGlyphCharacter(GLYPH);
+        assertTrue(device.getWrittenBytes() > written, "the glyph is uploaded again");
+        written = device.getWrittenBytes();
+        lcd.getGlyphCharacter(GLYPH);
+        assertEquals(written, device.getWrittenBytes());
+    }
+
+    private static void assertRowIsEmpty(FakeI2CDevice device, I2CLCDComponent lcd, int line) {
+        long written = device.getWrittenBytes();
+        lcd.displayText("                ", line);
+        assertEquals(written, device.getWrittenBytes());
+    }
+}
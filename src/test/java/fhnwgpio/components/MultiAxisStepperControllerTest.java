@@ -0,0 +1,98 @@
+package fhnwgpio.components;
+
+import fhnwgpio.components.helper.RecordingStepperMotorOutput;
+import fhnwgpio.components.helper.StepperMotorMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class MultiAxisStepperControllerTest {
+    @Test
+    void movesAllAxesOnALine() throws Exception {
+        RecordingStepperMotorOutput xOutput = new RecordingStepperMotorOutput();
+        RecordingStepperMotorOutput yOutput = new RecordingStepperMotorOutput();
+        StepperMotorComponent x = createAxis(xOutput);
+        StepperMotorComponent y = createAxis(yOutput);
+        MultiAxisStepperController stage = new MultiAxisStepperController(x, y);
+
+        long[] positions = stage.moveTo(40, -10).get(10, TimeUnit.SECONDS);
+        assertEquals(40L, positions[0]);
+        assertEquals(-10L, positions[1]);
+        assertStepsSpreadEvenly(xOutput, yOutput, 10);
+
+        xOutput.clear();
+        yOutput.clear();
+        positions = stage.moveBy(-30, 7).get(10, TimeUnit.SECONDS);
+        stage.shutdown();
+        assertEquals(10L, positions[0]);
+        assertEquals(-3L, positions[1]);
+        assertStepsSpreadEvenly(xOutput, yOutput, 7);
+    }
+
+    @Test
+    void waitingControllerDoesNotHoldOtherAxes() throws Exception {
+        // x is created first, so every controller locks it before y
+        StepperMotorComponent x = createAxis();
+        StepperMotorComponent y = createAxis();
+        MultiAxisStepperController yx = new MultiAxisStepperController(y, x);
+
+        x.lockMotion();
+        CompletableFuture<long[]> move;
+        try {
+            move = yx.moveBy(1, 1);
+            Thread.sleep(100);
+            CompletableFuture<Void> step = CompletableFuture.runAsync(() -> {
+                try {
+                    y.stepForwards(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            step.get(5, TimeUnit.SECONDS);
+            assertFalse(move.isDone(), "the controller waits for x");
+        } finally {
+            x.unlockMotion();
+        }
+
+        move.get(5, TimeUnit.SECONDS);
+        yx.shutdown();
+        assertEquals(2L, y.getPosition());
+        assertEquals(1L, x.getPosition());
+    }
+
+    /**
+     * Checks that the minor axis does its k-th step on tick ceil(k * ticks / steps) of the major axis, so its steps
+     * are spread evenly and its last step falls on the last tick.
+     */
+    private static void assertStepsSpreadEvenly(RecordingStepperMotorOutput major, RecordingStepperMotorOutput minor,
+            int minorSteps) {
+        long[] majorTimes = major.getTimes();
+        long[] minorTimes = minor.getTimes();
+        int ticks = majorTimes.length;
+        assertEquals(minorSteps, minorTimes.length);
+
+        // on every tick the major axis steps before the minor axis
+        int tick = 0;
+        for (int k = 1; k <= minorSteps; k++) {
+            while (tick < ticks && majorTimes[tick] <= minorTimes[k - 1]) {
+                tick++;
+            }
+            assertEquals((k * ticks + minorSteps - 1) / minorSteps, tick, "tick of step " + k);
+        }
+        assertEquals(ticks, tick, "the last steps of both axes are on the last tick");
+    }
+
+    private static StepperMotorComponent createAxis() {
+        return createAxis(new RecordingStepperMotorOutput());
+    }
+
+    private static StepperMotorComponent createAxis(RecordingStepperMotorOutput output) {
+        StepperMotorComponent axis = new StepperMotorComponent(output, 2, StepperMotorMode.HALF_STEP);
+        axis.setStepDelayMicros(10);
+        return axis;
+    }
+}
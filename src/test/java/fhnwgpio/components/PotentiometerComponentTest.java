@@ -0,0 +1,50 @@
+package fhnwgpio.components;
+
+import fhnwgpio.grove.GroveAdapter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PotentiometerComponentTest {
+    private static final int POLLS = 100_000;
+
+    @Test
+    void readsValueInRange() {
+        PotentiometerComponent potentiometer = new PotentiometerComponent(
+                new FakeI2CDevice(0x04, (byte) 0xf4, (byte) 0x01), GroveAdapter.A0);
+        assertEquals(500, potentiometer.getValue());
+        potentiometer.setRange(100, 200);
+        assertEquals(150, potentiometer.getValue());
+    }
+
+    @Test
+    void pollingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        PotentiometerComponent potentiometer = new PotentiometerComponent(
+                new FakeI2CDevice(0x04, (byte) 0xf4, (byte) 0x01), GroveAdapter.A0);
+        potentiometer.setRange(100, 200);
+        long sum = poll(potentiometer);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        sum += poll(potentiometer);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(2L * POLLS * 150, sum);
+        assertTrue(allocated < 1024, "polling " + POLLS + " values allocated " + allocated + " bytes");
+    }
+
+    private static long poll(PotentiometerComponent potentiometer) {
+        long sum = 0;
+        for (int i = 0; i < POLLS; i++) {
+            sum += potentiometer.getValue();
+        }
+        return sum;
+    }
+}
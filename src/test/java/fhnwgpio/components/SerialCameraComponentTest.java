@@ -0,0 +1,209 @@
+package fhnwgpio.components;
+
+import fhnwgpio.components.helper.SerialCameraConfiguration;
+import fhnwgpio.components.helper.SerialCameraConfiguration.Step;
+import fhnwgpio.components.helper.SerialCameraTimeoutException;
+import fhnwgpio.components.helper.SimulatedSerialCamera;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SerialCameraComponentTest {
+    private static final long SEED = 42;
+    // 0x0BB8, the low byte of the announced length has its highest bit set
+    private static final int PICTURE_LENGTH = 3000;
+
+    @Test
+    void capturesCleanPicture() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SimulatedSerialCamera simulation = new SimulatedSerialCamera(jpeg, SEED);
+        SerialCameraComponent camera = createCamera(simulation, configuration());
+
+        assertArrayEquals(jpeg, camera.getImageAsJpgBytes());
+        assertEquals(115200, camera.getBaudRate());
+        assertEquals(PICTURE_LENGTH, camera.getLastTransfer().getBytes());
+        assertEquals(0, camera.getCorruptPackageCount());
+    }
+
+    @Test
+    void streamsPictureToStreamAndChannel() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SerialCameraComponent camera = createCamera(new SimulatedSerialCamera(jpeg, SEED), configuration());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(PICTURE_LENGTH, camera.captureJpg(out));
+        assertArrayEquals(jpeg, out.toByteArray());
+
+        out.reset();
+        assertEquals(PICTURE_LENGTH, camera.captureJpg(Channels.newChannel(out)));
+        assertArrayEquals(jpeg, out.toByteArray());
+    }
+
+    @Test
+    void endTagInsideThePictureDoesNotEndIt() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        // end of an embedded thumbnail at the end of the first package of 64 - 6 bytes
+        jpeg[56] = (byte) 0xFF;
+        jpeg[57] = (byte) 0xD9;
+        SerialCameraComponent camera = createCamera(new SimulatedSerialCamera(jpeg, SEED),
+                configuration().packageSize(64));
+
+        assertArrayEquals(jpeg, camera.getImageAsJpgBytes());
+    }
+
+    @Test
+    void requestsCorruptPackagesAgain() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SimulatedSerialCamera simulation = new SimulatedSerialCamera(jpeg, SEED);
+        SerialCameraComponent camera = createCamera(simulation, configuration().packageSize(128));
+        simulation.setBitErrorRate(0.0005);
+
+        assertArrayEquals(jpeg, camera.getImageAsJpgBytes());
+        assertTrue(simulation.getCorruptedPackageCount() > 0, "the simulation corrupted packages");
+        assertEquals(simulation.getCorruptedPackageCount(), camera.getCorruptPackageCount());
+        assertEquals(camera.getCorruptPackageCount(), camera.getLastTransfer().getRetries());
+    }
+
+    @Test
+    void failsWhenRetriesAreUsedUp() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SimulatedSerialCamera simulation = new SimulatedSerialCamera(jpeg, SEED);
+        SerialCameraComponent camera = createCamera(simulation, configuration());
+        camera.setMaxPackageRetries(2);
+        simulation.setBitErrorRate(0.5);
+
+        IOException exception = assertThrows(IOException.class, camera::getImageAsJpgBytes);
+        assertTrue(exception.getMessage().contains("still corrupt after 2 retries"), exception.getMessage());
+        assertEquals(3, camera.getCorruptPackageCount());
+    }
+
+    @Test
+    void timesOutWhenTheCameraDoesNotAnswer() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SimulatedSerialCamera simulation = new SimulatedSerialCamera(jpeg, SEED);
+        SerialCameraComponent camera = createCamera(simulation, configuration().timeout(Step.PACKAGE_SIZE, 50));
+        simulation.setLatencyMicros(500_000);
+
+        long start = System.nanoTime();
+        SerialCameraTimeoutException exception = assertThrows(SerialCameraTimeoutException.class,
+                camera::getImageAsJpgBytes);
+        assertEquals(Step.PACKAGE_SIZE, exception.getStep());
+        assertEquals(0, exception.getReceivedBytes());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400), "gave up after the timeout");
+    }
+
+    @Test
+    void stepsDownToBaudRateThatSyncs() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        UnreadableAboveBaudRate simulation = new UnreadableAboveBaudRate(jpeg, 38400);
+        SerialCameraComponent camera = createCamera(simulation,
+                configuration().timeout(Step.SYNC, 300).timeout(Step.BAUD_RATE, 100));
+
+        assertEquals(38400, camera.getBaudRate());
+        assertEquals(38400, simulation.getCameraBaudRate());
+        assertArrayEquals(jpeg, camera.getImageAsJpgBytes());
+    }
+
+    @Test
+    void failsOnPictureLongerThanAnnounced() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        AnnouncingOtherLength simulation = new AnnouncingOtherLength(jpeg, 1000);
+        SerialCameraComponent camera = createCamera(simulation, configuration());
+
+        IOException exception = assertThrows(IOException.class, camera::getImageAsJpgBytes);
+        assertTrue(exception.getMessage().contains("more than the announced 1000 bytes"), exception.getMessage());
+    }
+
+    @Test
+    void failsOnTruncatedPicture() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        AnnouncingOtherLength simulation = new AnnouncingOtherLength(jpeg, 5000);
+        SerialCameraComponent camera = createCamera(simulation, configuration());
+
+        IOException exception = assertThrows(IOException.class, () -> camera.captureJpg(new ByteArrayOutputStream()));
+        assertTrue(exception.getMessage().contains("received 3000 of 5000 bytes"), exception.getMessage());
+        assertEquals(PICTURE_LENGTH, camera.getLastTransfer().getBytes());
+    }
+
+    @Test
+    void capturesContinuously() throws Exception {
+        byte[] jpeg = SimulatedSerialCamera.createJpegPayload(PICTURE_LENGTH, SEED);
+        SerialCameraComponent camera = createCamera(new SimulatedSerialCamera(jpeg, SEED), configuration());
+
+        SerialCameraComponent.CaptureSession session = camera.startContinuousCapture(2, 0);
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(jpeg, session.getFrames().poll(5, TimeUnit.SECONDS));
+        }
+        session.stop();
+
+        assertTrue(!session.isRunning(), "the session stopped");
+        assertTrue(session.getFrameCount() >= 3, "at least 3 frames delivered");
+        assertNull(session.getError());
+    }
+
+    private static SerialCameraConfiguration configuration() {
+        return new SerialCameraConfiguration().packageSize(512).baudRate(115200);
+    }
+
+    private static SerialCameraComponent createCamera(SimulatedSerialCamera simulation,
+            SerialCameraConfiguration configuration) throws IOException, InterruptedException {
+        return new SerialCameraComponent(configuration, simulation);
+    }
+
+    /**
+     * Camera whose answers can't be read above a baud rate, e.g. because of the clock of the UART. Its commands still
+     * arrive.
+     */
+    private static class UnreadableAboveBaudRate extends SimulatedSerialCamera {
+        private final int maxBaudRate;
+        private int hostBaudRate;
+
+        UnreadableAboveBaudRate(byte[] jpeg, int maxBaudRate) {
+            super(jpeg, SEED);
+            this.maxBaudRate = maxBaudRate;
+        }
+
+        @Override public synchronized void open(int baudRate) throws IOException {
+            super.open(baudRate);
+            hostBaudRate = baudRate;
+        }
+
+        @Override public synchronized byte[] read(int length) throws IOException {
+            byte[] bytes = super.read(length);
+            if (hostBaudRate > maxBaudRate) {
+                java.util.Arrays.fill(bytes, (byte) 0x55);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Camera that announces another picture length than it sends.
+     */
+    private static class AnnouncingOtherLength extends SimulatedSerialCamera {
+        private final byte[] jpeg;
+        private final byte[] announced;
+
+        AnnouncingOtherLength(byte[] jpeg, int announcedLength) {
+            super(jpeg, SEED);
+            this.jpeg = jpeg;
+            this.announced = new byte[announcedLength];
+        }
+
+        @Override public synchronized void write(byte[] data) throws IOException {
+            boolean getPicture = data.length > 1 && data[0] == (byte) 0xAA && data[1] == 0x04;
+            if (getPicture) setJpeg(announced);
+            super.write(data);
+            if (getPicture) setJpeg(jpeg);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package fhnwgpio.components;
+
+import fhnwgpio.components.helper.RecordingStepperMotorOutput;
+import fhnwgpio.components.helper.StepperMotionProfile;
+import fhnwgpio.components.helper.StepperMotorMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class StepperMotorComponentTest {
+    private static final int[] HALF_STEP = { 0b1000, 0b1100, 0b0100, 0b0110, 0b0010, 0b0011, 0b0001, 0b1001 };
+    // reaches its max speed after 100 steps
+    private static final StepperMotionProfile PROFILE = StepperMotionProfile.trapezoidal(2000, 20_000);
+
+    @Test
+    void retargetedMoveEndsAtTheNewTarget() throws Exception {
+        StepperMotorComponent motor = createMotor(new RecordingStepperMotorOutput());
+
+        CompletableFuture<Long> first = motor.moveTo(400);
+        awaitPosition(motor, 50);
+        CompletableFuture<Long> second = motor.moveTo(150);
+
+        assertEquals(150L, (long) second.get(5, TimeUnit.SECONDS));
+        assertEquals(150L, (long) first.get(5, TimeUnit.SECONDS));
+        assertEquals(150L, motor.getPosition());
+        assertFalse(motor.isMoving());
+    }
+
+    @Test
+    void reversalSkipsNoPhase() throws Exception {
+        RecordingStepperMotorOutput output = new RecordingStepperMotorOutput();
+        StepperMotorComponent motor = createMotor(output);
+
+        motor.moveTo(300);
+        awaitPosition(motor, 150);
+        assertEquals(-100L, (long) motor.moveTo(-100).get(5, TimeUnit.SECONDS));
+
+        int[] patterns = output.getPatterns();
+        int reversals = 0;
+        int lastDirection = 1;
+        for (int i = 1; i < patterns.length; i++) {
+            int direction = getPhaseDistance(patterns[i - 1], patterns[i]);
+            assertTrue(Math.abs(direction) == 1, "write " + i + " moves by one phase");
+            if (direction != lastDirection) reversals++;
+            lastDirection = direction;
+        }
+        assertEquals(1, reversals);
+        assertEquals(HALF_STEP[Math.floorMod(-100, HALF_STEP.length)], output.getCoils());
+    }
+
+    @Test
+    void stopDeceleratesBeforeReleasingTheCoils() throws Exception {
+        RecordingStepperMotorOutput output = new RecordingStepperMotorOutput();
+        StepperMotorComponent motor = createMotor(output);
+
+        CompletableFuture<Long> move = motor.moveTo(100_000);
+        awaitPosition(motor, 200);
+        long stopPosition = motor.getPosition();
+        motor.stop();
+        long endPosition = move.get(5, TimeUnit.SECONDS);
+
+        // decelerating from 2000 steps/s takes about 100 steps
+        assertTrue(endPosition - stopPosition >= 50, "decelerated from " + stopPosition + " to " + endPosition);
+        assertEquals(endPosition, motor.getPosition());
+
+        int[] patterns = output.getPatterns();
+        long[] times = output.getTimes();
+        int last = patterns.length - 1;
+        assertEquals(0, patterns[last]);
+        for (int i = 0; i < last; i++) {
+            assertTrue(patterns[i] != 0, "the coils are only released at the end");
+        }
+        // compared over 10 steps, a single late step is caught up by the next one
+        long cruise = times[150] - times[140];
+        long end = times[last - 1] - times[last - 11];
+        assertTrue(end > 2 * cruise, "last 10 steps took " + end + " ns, cruising " + cruise + " ns");
+    }
+
+    private static StepperMotorComponent createMotor(RecordingStepperMotorOutput output) {
+        StepperMotorComponent motor = new StepperMotorComponent(output, 2, StepperMotorMode.HALF_STEP);
+        motor.setMotionProfile(PROFILE);
+        return motor;
+    }
+
+    private static void awaitPosition(StepperMotorComponent motor, long position) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (motor.getPosition() < position) {
+            assertTrue(System.nanoTime() < deadline, "the motor reaches " + position);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * @return number of phases from one coil pattern to the other, between -3 and 4
+     */
+    private static int getPhaseDistance(int from, int to) {
+        int distance = Math.floorMod(indexOf(to) - indexOf(from), HALF_STEP.length);
+        return distance > HALF_STEP.length / 2 ? distance - HALF_STEP.length : distance;
+    }
+
+    private static int indexOf(int pattern) {
+        for (int i = 0; i < HALF_STEP.length; i++) {
+            if (HALF_STEP[i] == pattern) return i;
+        }
+        fail("unknown coil pattern " + Integer.toBinaryString(pattern));
+        return -1;
+    }
+}
@@ -0,0 +1,128 @@
+package fhnwgpio.components.base;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.GpioProvider;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import fhnwgpio.components.StepperMotorComponent;
+import fhnwgpio.components.helper.StepperMotorMode;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GpioStepperMotorOutputTest {
+    private static final int[] HALF_STEP = { 0b1000, 0b1100, 0b0100, 0b0110, 0b0010, 0b0011, 0b0001, 0b1001 };
+    private static final int[] SINGLE_STEP = { 0b1000, 0b0100, 0b0010, 0b0001 };
+    private static final int[] DOUBLE_STEP = { 0b1100, 0b0110, 0b0011, 0b1001 };
+
+    @Test
+    void firstWriteSetsAllPins() {
+        RecordingProvider provider = new RecordingProvider();
+        GpioStepperMotorOutput output = provider.createOutput();
+
+        output.write(0b0001);
+
+        assertEquals(4, provider.getWriteCount());
+        assertEquals(0b0001, provider.getCoils());
+    }
+
+    @Test
+    void onlyChangedPinsAreWritten() {
+        RecordingProvider provider = new RecordingProvider();
+        GpioStepperMotorOutput output = provider.createOutput();
+        output.write(0b1000);
+        provider.clear();
+
+        output.write(0b1100);
+        assertEquals(1, provider.getWriteCount());
+        output.write(0b1100);
+        assertEquals(1, provider.getWriteCount());
+        output.write(0b0011);
+        assertEquals(5, provider.getWriteCount());
+        assertEquals(0b0011, provider.getCoils());
+    }
+
+    @Test
+    void stepsThroughThePatternOfEveryMode() throws InterruptedException {
+        // half steps switch one coil per step, full steps switch one coil off and the next one on
+        assertSteps(StepperMotorMode.HALF_STEP, HALF_STEP, 1);
+        assertSteps(StepperMotorMode.SINGLE_STEP, SINGLE_STEP, 2);
+        assertSteps(StepperMotorMode.DOUBLE_STEP, DOUBLE_STEP, 2);
+    }
+
+    private static void assertSteps(StepperMotorMode mode, int[] sequence, int pinsPerStep)
+            throws InterruptedException {
+        RecordingProvider provider = new RecordingProvider();
+        GpioStepperMotorOutput gpioOutput = provider.createOutput();
+        List<Integer> patterns = new ArrayList<>();
+        StepperMotorComponent motor = new StepperMotorComponent(coils -> {
+            gpioOutput.write(coils);
+            patterns.add(provider.getCoils());
+        }, 2, mode);
+        motor.setStepDelayMicros(10);
+
+        // the first step writes all pins, all following steps only the changed ones
+        int steps = 2 * sequence.length;
+        motor.stepForwards(steps);
+        assertEquals(4 + (steps - 1) * pinsPerStep, provider.getWriteCount(), mode + " pin writes");
+
+        int[] expected = new int[steps];
+        for (int i = 0; i < steps; i++) {
+            expected[i] = sequence[(i + 1) % sequence.length];
+        }
+        assertArrayEquals(expected, patterns.stream().mapToInt(Integer::intValue).toArray(), mode + " patterns");
+    }
+
+    /**
+     * GPIO provider that keeps the state of four pins and counts how often they are written.
+     */
+    private static class RecordingProvider {
+        private final PinState[] states = new PinState[4];
+        private int writeCount = 0;
+
+        GpioStepperMotorOutput createOutput() {
+            GpioProvider provider = (GpioProvider) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { GpioProvider.class }, (proxy, method, args) -> {
+                        if (method.getName().equals("setState")) {
+                            states[((Pin) args[0]).getAddress()] = (PinState) args[1];
+                            writeCount++;
+                        }
+                        return null;
+                    });
+            return new GpioStepperMotorOutput(createPin(provider, 0), createPin(provider, 1),
+                    createPin(provider, 2), createPin(provider, 3));
+        }
+
+        int getWriteCount() {
+            return writeCount;
+        }
+
+        int getCoils() {
+            int coils = 0;
+            for (int i = 0; i < states.length; i++) {
+                if (states[i] == PinState.HIGH) coils |= 1 << i;
+            }
+            return coils;
+        }
+
+        void clear() {
+            writeCount = 0;
+        }
+
+        private static GpioPinDigitalOutput createPin(GpioProvider provider, int address) {
+            Pin pin = (Pin) Proxy.newProxyInstance(Pin.class.getClassLoader(), new Class<?>[] { Pin.class },
+                    (proxy, method, args) -> method.getName().equals("getAddress") ? address : null);
+            return (GpioPinDigitalOutput) Proxy.newProxyInstance(GpioPinDigitalOutput.class.getClassLoader(),
+                    new Class<?>[] { GpioPinDigitalOutput.class }, (proxy, method, args) -> {
+                        if (method.getName().equals("getPin")) return pin;
+                        if (method.getName().equals("getProvider")) return provider;
+                        return null;
+                    });
+        }
+    }
+}
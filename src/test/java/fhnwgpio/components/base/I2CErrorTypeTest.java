@@ -0,0 +1,41 @@
+package fhnwgpio.components.base;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class I2CErrorTypeTest {
+    @Test
+    void classifiesFailedTransfers() {
+        assertEquals(I2CErrorType.NACK, of("Error writing to i2c-1/0x27. Got '-20121'."));
+        assertEquals(I2CErrorType.NACK, of("Error reading from i2c-1/0x48 at address 0x00. Got '-20006'."));
+        assertEquals(I2CErrorType.TIMEOUT, of("Error writing to i2c-1/0x27. Got '-20110'."));
+        assertEquals(I2CErrorType.TIMEOUT, of("Error reading from i2c-1/0x48. Got '-20011'."));
+        assertEquals(I2CErrorType.BUS_ERROR, of("Error writing to i2c-1/0x27. Got '-20005'."));
+    }
+
+    @Test
+    void classifiesFailedSlaveSelection() {
+        assertEquals(I2CErrorType.NACK, of("Error writing to i2c-1/0x27. Got '-10121'."));
+        assertEquals(I2CErrorType.BUS_ERROR, of("Error reading from i2c-1/0x48. Got '-10005'."));
+    }
+
+    @Test
+    void classifiesPlainErrno() {
+        assertEquals(I2CErrorType.NACK, of("Error writing. Got -121."));
+        assertEquals(I2CErrorType.TIMEOUT, of("Error writing. Got -110"));
+    }
+
+    @Test
+    void unknownCodesAndMessages() {
+        assertEquals(I2CErrorType.UNKNOWN, of("Error writing to i2c-1/0x27. Got '-20022'."));
+        assertEquals(I2CErrorType.UNKNOWN, of("Device is closed"));
+        assertEquals(I2CErrorType.UNKNOWN, of(null));
+    }
+
+    private static I2CErrorType of(String message) {
+        return I2CErrorType.of(new IOException(message));
+    }
+}
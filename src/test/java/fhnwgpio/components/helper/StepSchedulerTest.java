@@ -0,0 +1,43 @@
+package fhnwgpio.components.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepSchedulerTest {
+    private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int STEPS = 50;
+
+    @Test
+    void waitsUntilTheDeadline() throws InterruptedException {
+        StepScheduler scheduler = new StepScheduler();
+        long start = System.nanoTime();
+        scheduler.start();
+        for (int i = 1; i <= STEPS; i++) {
+            scheduler.awaitDeadline(i * STEP_NANOS);
+            assertTrue(System.nanoTime() - start >= i * STEP_NANOS, "step " + i + " is not early");
+        }
+        assertEquals(STEPS, scheduler.getSampleCount());
+    }
+
+    @Test
+    void lateStepDoesNotDelayTheFollowingOnes() throws InterruptedException {
+        StepScheduler scheduler = new StepScheduler();
+        long start = System.nanoTime();
+        scheduler.start();
+        scheduler.awaitDeadline(STEP_NANOS);
+        // the caller is 20 steps late, e.g. because it was descheduled
+        Thread.sleep(20);
+        for (int i = 2; i <= STEPS; i++) {
+            scheduler.awaitDeadline(i * STEP_NANOS);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // deadlines relative to the previous step would end 20 ms later
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(STEPS + 10), "move took " + elapsed + " ns");
+        assertTrue(scheduler.getMaxJitterNanos() >= TimeUnit.MILLISECONDS.toNanos(15), "the late step is recorded");
+    }
+}
@@ -0,0 +1,89 @@
+package fhnwgpio.components.helper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepperMotionProfileTest {
+    private static final double MAX_SPEED = 1000;
+    private static final double ACCELERATION = 5000;
+    private static final double JERK = 100_000;
+    // the speeds are averages over whole steps, which is a bit off where the speed changes
+    private static final double TOLERANCE = 1.05;
+
+    @Test
+    void stepTimesNeverDecrease() {
+        for (StepperMotionProfile profile : profiles()) {
+            for (int steps : new int[] { 1, 2, 3, 50, 500 }) {
+                long[] times = profile.planStepTimes(steps);
+                assertEquals(steps + 1, times.length);
+                assertEquals(0L, times[0]);
+                for (int i = 1; i < times.length; i++) {
+                    assertTrue(times[i] >= times[i - 1], profile + ": step " + i + " of " + steps);
+                }
+            }
+        }
+    }
+
+    @Test
+    void speedAndAccelerationStayWithinTheLimits() {
+        for (StepperMotionProfile profile : profiles()) {
+            long[] times = profile.planStepTimes(500);
+            double[] speeds = getSpeeds(times);
+            for (int i = 0; i < speeds.length; i++) {
+                assertTrue(speeds[i] <= MAX_SPEED * TOLERANCE, profile + ": speed " + speeds[i] + " at step " + i);
+            }
+            // the first step starts from standstill, its average speed says nothing about the acceleration
+            for (int i = 2; i < speeds.length; i++) {
+                double seconds = (times[i + 1] - times[i - 1]) / 2e9;
+                double acceleration = Math.abs(speeds[i] - speeds[i - 1]) / seconds;
+                assertTrue(acceleration <= ACCELERATION * TOLERANCE,
+                        profile + ": acceleration " + acceleration + " at step " + i);
+            }
+            assertTrue(speeds[250] >= MAX_SPEED / TOLERANCE, profile + ": reaches the max speed");
+        }
+    }
+
+    @Test
+    void shortMoveTurnsAroundAtLowerSpeed() {
+        // the trapezoidal profile needs 100 steps to reach its max speed, 50 steps only reach half of it
+        long[] times = StepperMotionProfile.trapezoidal(MAX_SPEED, ACCELERATION).planStepTimes(50);
+        double[] speeds = getSpeeds(times);
+
+        double peakSpeed = 0;
+        for (double speed : speeds) {
+            peakSpeed = Math.max(peakSpeed, speed);
+        }
+        assertTrue(peakSpeed <= 500 * TOLERANCE && peakSpeed >= 500 / TOLERANCE, "peak speed " + peakSpeed);
+        // accelerating to 500 steps/s and back takes 2 * 0.1 s
+        assertEquals(200.0, times[50] / 1e6, 1.0);
+        assertEquals(times[1] - times[0], times[50] - times[49], 1000);
+    }
+
+    @Test
+    void zeroStepsEndImmediately() {
+        for (StepperMotionProfile profile : profiles()) {
+            assertArrayEquals(new long[] { 0 }, profile.planStepTimes(0));
+            assertThrows(IllegalArgumentException.class, () -> profile.planStepTimes(-1));
+        }
+    }
+
+    private static StepperMotionProfile[] profiles() {
+        return new StepperMotionProfile[] { StepperMotionProfile.trapezoidal(MAX_SPEED, ACCELERATION),
+                StepperMotionProfile.sCurve(MAX_SPEED, ACCELERATION, JERK) };
+    }
+
+    /**
+     * @return average speed of every step in steps per second
+     */
+    private static double[] getSpeeds(long[] times) {
+        double[] speeds = new double[times.length - 1];
+        for (int i = 0; i < speeds.length; i++) {
+            speeds[i] = 1e9 / (times[i + 1] - times[i]);
+        }
+        return speeds;
+    }
+}